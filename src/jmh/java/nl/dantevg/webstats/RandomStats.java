@@ -0,0 +1,76 @@
+package nl.dantevg.webstats;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Generates random stats for the benchmarks, like {@code tools/RandomStats.js}
+ * does for the web page.
+ */
+public class RandomStats {
+	private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+	
+	private final Random random;
+	
+	public RandomStats(long seed) {
+		random = new Random(seed);
+	}
+	
+	public static @NotNull String intToName(int n, int length) {
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			name.insert(0, ALPHABET.charAt(n % 26));
+			n /= 26;
+		}
+		return name.toString();
+	}
+	
+	public static @NotNull List<String> players(int nPlayers) {
+		List<String> players = new ArrayList<>(nPlayers);
+		for (int i = 0; i < nPlayers; i++) players.add(intToName(i, 4));
+		return players;
+	}
+	
+	public static @NotNull List<String> columns(int nColumns) {
+		List<String> columns = new ArrayList<>(nColumns);
+		for (int i = 0; i < nColumns; i++) columns.add("Stat " + intToName(i, 2));
+		return columns;
+	}
+	
+	/**
+	 * Create a table with a random score between 0 and 1000 for most players
+	 * in every column. Like real stats, some players have no score in some
+	 * columns.
+	 */
+	public @NotNull Table<String, String, String> scores(@NotNull List<String> players, @NotNull List<String> columns) {
+		Table<String, String, String> scores = HashBasedTable.create();
+		for (String player : players) {
+			for (String column : columns) {
+				if (random.nextInt(10) > 0) scores.put(player, column, Integer.toString(random.nextInt(1000)));
+			}
+		}
+		return scores;
+	}
+	
+	/**
+	 * Create a copy of the scores with a fraction of the scores changed.
+	 */
+	public @NotNull Table<String, String, String> change(@NotNull Table<String, String, String> scores, double fraction) {
+		Table<String, String, String> changed = HashBasedTable.create(scores);
+		for (Table.Cell<String, String, String> cell : scores.cellSet()) {
+			if (random.nextDouble() < fraction) {
+				changed.put(cell.getRowKey(), cell.getColumnKey(), Integer.toString(random.nextInt(1000)));
+			}
+		}
+		return changed;
+	}
+	
+	public @NotNull StatData.Stats stats(int nPlayers, int nColumns) {
+		List<String> players = players(nPlayers);
+		return new StatData.Stats(new EntriesScores(new HashSet<>(players), scores(players, columns(nColumns))));
+	}
+	
+}
@@ -0,0 +1,72 @@
+package nl.dantevg.webstats;
+
+import com.google.common.collect.Table;
+import com.google.gson.Gson;
+import nl.dantevg.webstats.storage.StorageMethod;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsBenchmark {
+	@Param({"1000", "10000", "100000"})
+	public int players;
+	
+	@Param({"20"})
+	public int columns;
+	
+	// Stats of the scoreboard, database and placeholder sources
+	private List<EntriesScores> sources;
+	private StatData.Stats stats;
+	private StorageMethod.Result lastExport;
+	private List<String> storedColumns;
+	
+	@Setup
+	public void setup() {
+		WebStats.logger = Logger.getLogger("WebStats");
+		RandomStats random = new RandomStats(42);
+		List<String> playerNames = RandomStats.players(players);
+		List<String> columnNames = RandomStats.columns(columns);
+		
+		// Every source has a third of the columns
+		sources = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			List<String> sourceColumns = columnNames.subList(i * columns / 3, (i + 1) * columns / 3);
+			sources.add(new EntriesScores(new HashSet<>(playerNames), random.scores(playerNames, sourceColumns)));
+		}
+		
+		Table<String, String, String> scores = random.scores(playerNames, columnNames);
+		stats = new StatData.Stats(new EntriesScores(new HashSet<>(playerNames), scores));
+		
+		// About 1 in 10 players has a changed score since the last export
+		lastExport = new StorageMethod.Result(columnNames, random.change(scores, 0.005));
+		storedColumns = columnNames;
+	}
+	
+	@Benchmark
+	public ScoreTable mergeSources() {
+		EntriesScores entriesScores = new EntriesScores();
+		for (EntriesScores source : sources) entriesScores.add(source);
+		return entriesScores.toScoreTable();
+	}
+	
+	@Benchmark
+	public String serializeStats() {
+		return new Gson().toJson(stats);
+	}
+	
+	@Benchmark
+	public Table<String, String, String> filterChanged() {
+		return StatExporter.filterChanged(stats, lastExport, storedColumns);
+	}
+	
+}
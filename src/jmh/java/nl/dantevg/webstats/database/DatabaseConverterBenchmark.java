@@ -0,0 +1,99 @@
+package nl.dantevg.webstats.database;
+
+import com.google.gson.Gson;
+import nl.dantevg.webstats.RandomStats;
+import nl.dantevg.webstats.WebStats;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Benchmarks the conversions that are applied to the rows from the database,
+ * without the database itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseConverterBenchmark {
+	private static final List<List<String>> KEY_VALUE = Arrays.asList(
+			Arrays.asList("rename", "name", "player"),
+			Arrays.asList("key-value", "stat", "value"));
+	private static final List<List<String>> JSON = Arrays.asList(
+			Arrays.asList("rename", "name", "player"),
+			Arrays.asList("json", "data"),
+			Arrays.asList("remove", "id"));
+	
+	@Param({"1000", "10000", "100000"})
+	public int players;
+	
+	@Param({"20"})
+	public int columns;
+	
+	// One row per player per stat, as in a key-value table
+	private List<Map<String, String>> keyValueRows;
+	// One row per player, with all stats in a JSON column
+	private List<Map<String, String>> jsonRows;
+	
+	// Fresh copies for every invocation, because the conversions modify the rows
+	private List<Map<String, String>> keyValueInput;
+	private List<Map<String, String>> jsonInput;
+	
+	@Setup
+	public void setup() {
+		WebStats.logger = Logger.getLogger("WebStats");
+		Random random = new Random(42);
+		Gson gson = new Gson();
+		List<String> columnNames = RandomStats.columns(columns);
+		
+		keyValueRows = new ArrayList<>();
+		jsonRows = new ArrayList<>();
+		int id = 0;
+		for (String player : RandomStats.players(players)) {
+			Map<String, String> stats = new HashMap<>();
+			for (String column : columnNames) {
+				String value = Integer.toString(random.nextInt(1000));
+				stats.put(column, value);
+				
+				Map<String, String> row = new HashMap<>();
+				row.put("name", player);
+				row.put("stat", column);
+				row.put("value", value);
+				keyValueRows.add(row);
+			}
+			
+			Map<String, String> row = new HashMap<>();
+			row.put("id", Integer.toString(id++));
+			row.put("name", player);
+			row.put("data", gson.toJson(stats));
+			jsonRows.add(row);
+		}
+	}
+	
+	@Setup(Level.Invocation)
+	public void copyRows() {
+		keyValueInput = copy(keyValueRows);
+		jsonInput = copy(jsonRows);
+	}
+	
+	private static List<Map<String, String>> copy(List<Map<String, String>> rows) {
+		List<Map<String, String>> copy = new ArrayList<>(rows.size());
+		for (Map<String, String> row : rows) copy.add(new HashMap<>(row));
+		return copy;
+	}
+	
+	@Benchmark
+	public List<Map<String, String>> keyValue() {
+		return DatabaseConverter.convert(keyValueInput, KEY_VALUE);
+	}
+	
+	@Benchmark
+	public List<Map<String, String>> json() {
+		return DatabaseConverter.convert(jsonInput, JSON);
+	}
+	
+}
@@ -0,0 +1,52 @@
+package nl.dantevg.webstats.discordwebhook;
+
+import nl.dantevg.webstats.RandomStats;
+import nl.dantevg.webstats.StatData;
+import nl.dantevg.webstats.WebStatsConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiscordWebhookBenchmark {
+	private static final int DISPLAY_COUNT = 10;
+	
+	@Param({"1000", "10000", "100000"})
+	public int players;
+	
+	@Param({"20"})
+	public int columns;
+	
+	private StatData.Stats stats;
+	private List<String> embedColumns;
+	private String sortColumn;
+	private List<String> sorted;
+	
+	@Setup
+	public void setup() {
+		stats = new RandomStats(42).stats(players, columns);
+		embedColumns = RandomStats.columns(columns).subList(0, 3);
+		sortColumn = embedColumns.get(0);
+		sorted = sortEntries();
+	}
+	
+	@Benchmark
+	public List<String> sortEntries() {
+		List<String> entries = new ArrayList<>(stats.entries);
+		DiscordWebhook.sortEntries(entries, stats.scores.column(sortColumn), WebStatsConfig.SortDirection.DESCENDING);
+		return entries;
+	}
+	
+	@Benchmark
+	public DiscordEmbed makeEmbed() {
+		return DiscordWebhook.makeEmbed(stats, embedColumns, sorted, DISPLAY_COUNT);
+	}
+	
+}
@@ -0,0 +1,76 @@
+package nl.dantevg.webstats.storage;
+
+import com.google.common.collect.Table;
+import nl.dantevg.webstats.RandomStats;
+import nl.dantevg.webstats.WebStats;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CSVStorageBenchmark {
+	@Param({"1000", "10000", "100000"})
+	public int players;
+	
+	@Param({"20"})
+	public int columns;
+	
+	private File directory;
+	private CSVStorage storage;
+	private CSVStorage appendStorage;
+	private Table<String, String, String> scores;
+	private List<String> columnNames;
+	
+	@Setup
+	public void setup() throws IOException {
+		WebStats.logger = Logger.getLogger("WebStats");
+		directory = Files.createTempDirectory("webstats-benchmark").toFile();
+		storage = new CSVStorage(new File(directory, "stats.csv"), new HashMap<>(), "player");
+		columnNames = RandomStats.columns(columns);
+		scores = new RandomStats(42).scores(RandomStats.players(players), columnNames);
+		storage.store(scores, columnNames);
+	}
+	
+	@Setup(Level.Iteration)
+	public void setupAppend() {
+		// Start every iteration with an empty file, so that it does not grow
+		// too large to append to
+		File file = new File(directory, "append.csv");
+		file.delete();
+		appendStorage = new CSVStorage(file, new HashMap<>(), "player");
+	}
+	
+	@TearDown
+	public void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) for (File file : files) file.delete();
+		directory.delete();
+	}
+	
+	@Benchmark
+	public boolean store() {
+		return storage.store(scores, columnNames);
+	}
+	
+	@Benchmark
+	public boolean append() {
+		return appendStorage.append(scores, columnNames);
+	}
+	
+	@Benchmark
+	public StorageMethod.Result load() {
+		return storage.load();
+	}
+	
+}
@@ -0,0 +1,43 @@
+package nl.dantevg.webstats;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Collection of the stats of one source, split into small steps so that it
+ * can be spread out over multiple ticks.
+ */
+public interface CollectionTask {
+	/**
+	 * Do the next small piece of work. Called on the main thread.
+	 *
+	 * @return whether the task is finished
+	 */
+	boolean step();
+	
+	/**
+	 * Get the collected stats. Only valid once {@link #step()} returned true.
+	 *
+	 * @return the collected stats
+	 */
+	@NotNull EntriesScores getResult();
+	
+	/**
+	 * Whether the last step did nothing because the task is waiting for work
+	 * on other threads. The rest of the task is then done in the next tick.
+	 */
+	default boolean isWaiting() {
+		return false;
+	}
+	
+	/**
+	 * Do all steps at once.
+	 *
+	 * @return the collected stats
+	 */
+	default @NotNull EntriesScores runToCompletion() {
+		boolean done = false;
+		while (!done) done = step();
+		return getResult();
+	}
+	
+}
@@ -4,13 +4,19 @@ import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class EntriesScores {
 	public Set<String> entries;
 	public Table<String, String, String> scores;
 	
+	// Scores of other EntriesScores added to this one. These are only merged
+	// when building the ScoreTable, to avoid copying every score on every add
+	private final List<Table<String, String, String>> added = new ArrayList<>();
+	
 	public EntriesScores(Set<String> entries, Table<String, String, String> scores) {
 		this.entries = entries;
 		this.scores = scores;
@@ -23,7 +29,21 @@ public class EntriesScores {
 	
 	public void add(@NotNull EntriesScores that) {
 		entries.addAll(that.entries);
-		scores.putAll(that.scores);
+		added.add(that.scores);
+		added.addAll(that.added);
+	}
+	
+	/**
+	 * Merge all scores into a single immutable table. When multiple sources
+	 * have a score for the same entry and column, the last added one is kept.
+	 *
+	 * @return all scores
+	 */
+	public @NotNull ScoreTable toScoreTable() {
+		if (added.isEmpty()) return ScoreTable.copyOf(scores);
+		ScoreTable.Builder builder = ScoreTable.builder().putAll(scores);
+		for (Table<String, String, String> table : added) builder.putAll(table);
+		return builder.build();
 	}
 	
 }
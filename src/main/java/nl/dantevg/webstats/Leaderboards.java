@@ -0,0 +1,202 @@
+package nl.dantevg.webstats;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the best entries of every column that is asked for, so that showing
+ * the top few entries does not require sorting all entries every time.
+ * <p>
+ * Every leaderboard is updated from the previous stats it has seen, by only
+ * looking at the scores in its own column that changed. Which scores changed
+ * is found once per snapshot (see {@link ScoreChanges}), not by every
+ * leaderboard. Only when too many of the best entries got worse or
+ * disappeared does a leaderboard need to look at the whole column again.
+ * <p>
+ * Only entries with a score in the column are ranked. Numbers are ranked
+ * before other scores, which are compared as case-insensitive strings, and
+ * equal scores are ordered by entry name. For columns with only numbers or
+ * only strings, this is the same order as {@link SortIndex}.
+ */
+public class Leaderboards {
+	// Keep at least this many entries per leaderboard, so that a few entries
+	// dropping out of the top do not immediately require a rebuild
+	private static final int MIN_CAPACITY = 32;
+	
+	private final Map<String, Leaderboard> leaderboards = new ConcurrentHashMap<>();
+	
+	/**
+	 * Get the best entries in a column.
+	 *
+	 * @param snapshot  the snapshot to take the stats from
+	 * @param column    the column to rank by
+	 * @param direction {@code DESCENDING} to put the highest scores first
+	 * @param n         the maximum number of entries to return
+	 * @return at most n entries with their score, best first
+	 */
+	public @NotNull List<Score> getTop(@NotNull StatCollector.Snapshot snapshot, @NotNull String column,
+	                                   @NotNull WebStatsConfig.SortDirection direction, int n) {
+		if (n <= 0 || !snapshot.stats.scores.containsColumn(column)) return Collections.emptyList();
+		Leaderboard leaderboard = leaderboards.computeIfAbsent(direction + " " + column,
+				key -> new Leaderboard(column, direction));
+		return leaderboard.getTop(snapshot, n);
+	}
+	
+	public void clear() {
+		leaderboards.clear();
+	}
+	
+	public @NotNull String debug() {
+		return "Leaderboards: " + leaderboards.size();
+	}
+	
+	/**
+	 * An entry in a leaderboard, with its score.
+	 */
+	public static class Score {
+		public final String name;
+		public final String score;
+		private final transient double number;
+		private final transient boolean isNumber;
+		
+		private Score(@NotNull String name, @NotNull String score, double number, boolean isNumber) {
+			this.name = name;
+			this.score = score;
+			this.number = number;
+			this.isNumber = isNumber;
+		}
+		
+		private static @NotNull Score of(@NotNull ScoreTable scores, @NotNull String entry, @NotNull String column) {
+			String score = Objects.requireNonNull(scores.get(entry, column));
+			if (scores.isNumeric(column)) {
+				return new Score(entry, score, scores.getNumber(entry, column), true);
+			}
+			try {
+				return new Score(entry, score, Double.parseDouble(score), true);
+			} catch (NumberFormatException e) {
+				return new Score(entry, score, Double.NaN, false);
+			}
+		}
+		
+		// Ascending order. This needs to be a total order (unlike
+		// SortIndex.compare for mixed columns), because it is used in a TreeSet
+		private static final Comparator<Score> ORDER = (a, b) -> {
+			int result;
+			if (a.isNumber && b.isNumber) result = Double.compare(a.number, b.number);
+			else if (a.isNumber != b.isNumber) result = a.isNumber ? -1 : 1;
+			else {
+				result = a.score.compareToIgnoreCase(b.score);
+				if (result == 0) result = a.score.compareTo(b.score);
+			}
+			return (result != 0) ? result : a.name.compareTo(b.name);
+		};
+	}
+	
+	private static class Leaderboard {
+		private final @NotNull String column;
+		private final @NotNull Comparator<Score> order;
+		
+		// The best entries, and the same entries by name
+		private final TreeSet<Score> top;
+		private final Map<String, Score> members = new HashMap<>();
+		
+		// All entries that are not in the leaderboard are worse than (or
+		// equal to) this score. Null when all entries are in the leaderboard.
+		private @Nullable Score bound;
+		private int capacity = MIN_CAPACITY;
+		
+		// The stats this leaderboard is up-to-date with
+		private @Nullable ScoreTable scores;
+		private long version = -1;
+		
+		Leaderboard(@NotNull String column, @NotNull WebStatsConfig.SortDirection direction) {
+			this.column = column;
+			this.order = (direction == WebStatsConfig.SortDirection.ASCENDING)
+					? Score.ORDER : Score.ORDER.reversed();
+			this.top = new TreeSet<>(order);
+		}
+		
+		synchronized @NotNull List<Score> getTop(@NotNull StatCollector.Snapshot snapshot, int n) {
+			// Never go back to older stats when requests come in out of order
+			if (snapshot.version > version) {
+				update(snapshot);
+				version = snapshot.version;
+			}
+			
+			if (n > capacity / 2) {
+				capacity = Math.max(MIN_CAPACITY, 2 * n);
+				if (bound != null) rebuild();
+			} else if (top.size() < n && bound != null) {
+				// Too many of the best entries dropped out, there may be
+				// entries that are not in the leaderboard but should be
+				rebuild();
+			}
+			
+			List<Score> result = new ArrayList<>(Math.min(n, top.size()));
+			for (Score score : top) {
+				if (result.size() >= n) break;
+				result.add(score);
+			}
+			return result;
+		}
+		
+		private void update(@NotNull StatCollector.Snapshot snapshot) {
+			ScoreTable oldScores = scores;
+			ScoreTable newScores = snapshot.stats.scores;
+			scores = newScores;
+			if (oldScores == null) {
+				rebuild();
+				return;
+			}
+			if (oldScores == newScores) return;
+			
+			// The snapshot knows which scores changed when this leaderboard
+			// was up-to-date with the previous stats. Otherwise (some stats
+			// were skipped), compare the whole column
+			ScoreChanges changes = snapshot.changes;
+			if (changes == null || changes.from != oldScores) changes = ScoreChanges.between(oldScores, newScores, column);
+			for (String entry : changes.getChanged(column)) {
+				remove(entry);
+				add(Score.of(newScores, entry, column));
+			}
+			for (String entry : changes.getRemoved(column)) remove(entry);
+			trim();
+		}
+		
+		private void rebuild() {
+			top.clear();
+			members.clear();
+			bound = null;
+			if (scores == null) return;
+			for (String entry : scores.entriesIn(column)) {
+				add(Score.of(scores, entry, column));
+				trim();
+			}
+		}
+		
+		private void add(@NotNull Score score) {
+			// Entries worse than the bound may not be the best ones outside
+			// of the leaderboard, so do not add them
+			if (bound != null && order.compare(score, bound) >= 0) return;
+			top.add(score);
+			members.put(score.name, score);
+		}
+		
+		private void remove(@NotNull String entry) {
+			Score score = members.remove(entry);
+			if (score != null) top.remove(score);
+		}
+		
+		private void trim() {
+			while (top.size() > capacity) {
+				Score worst = top.pollLast();
+				members.remove(worst.name);
+				bound = worst;
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,149 @@
+package nl.dantevg.webstats;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Writes values in the MessagePack binary format (https://msgpack.org).
+ * Only the types that WebStats sends are supported: nil, booleans, integers,
+ * doubles, strings, arrays and maps.
+ */
+public class MessagePackWriter {
+	private final ByteArrayOutputStream bytes;
+	private final DataOutputStream out;
+	
+	public MessagePackWriter(int initialSize) {
+		bytes = new ByteArrayOutputStream(initialSize);
+		out = new DataOutputStream(bytes);
+	}
+	
+	public byte[] toByteArray() {
+		return bytes.toByteArray();
+	}
+	
+	public @NotNull MessagePackWriter writeNil() throws IOException {
+		out.writeByte(0xc0);
+		return this;
+	}
+	
+	public @NotNull MessagePackWriter write(boolean value) throws IOException {
+		out.writeByte(value ? 0xc3 : 0xc2);
+		return this;
+	}
+	
+	public @NotNull MessagePackWriter write(long value) throws IOException {
+		if (value >= 0 && value < 0x80) {
+			out.writeByte((int) value); // positive fixint
+		} else if (value < 0 && value >= -32) {
+			out.writeByte((int) value); // negative fixint
+		} else if (value == (byte) value) {
+			out.writeByte(0xd0);
+			out.writeByte((int) value);
+		} else if (value == (short) value) {
+			out.writeByte(0xd1);
+			out.writeShort((int) value);
+		} else if (value == (int) value) {
+			out.writeByte(0xd2);
+			out.writeInt((int) value);
+		} else {
+			out.writeByte(0xd3);
+			out.writeLong(value);
+		}
+		return this;
+	}
+	
+	public @NotNull MessagePackWriter write(double value) throws IOException {
+		out.writeByte(0xcb);
+		out.writeDouble(value);
+		return this;
+	}
+	
+	public @NotNull MessagePackWriter write(@NotNull String value) throws IOException {
+		byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+		if (utf8.length < 32) {
+			out.writeByte(0xa0 | utf8.length);
+		} else if (utf8.length < 0x100) {
+			out.writeByte(0xd9);
+			out.writeByte(utf8.length);
+		} else if (utf8.length < 0x10000) {
+			out.writeByte(0xda);
+			out.writeShort(utf8.length);
+		} else {
+			out.writeByte(0xdb);
+			out.writeInt(utf8.length);
+		}
+		out.write(utf8);
+		return this;
+	}
+	
+	/**
+	 * Start an array. Must be followed by exactly {@code size} values.
+	 */
+	public @NotNull MessagePackWriter writeArrayHeader(int size) throws IOException {
+		if (size < 16) {
+			out.writeByte(0x90 | size);
+		} else if (size < 0x10000) {
+			out.writeByte(0xdc);
+			out.writeShort(size);
+		} else {
+			out.writeByte(0xdd);
+			out.writeInt(size);
+		}
+		return this;
+	}
+	
+	/**
+	 * Start a map. Must be followed by exactly {@code size} keys and values.
+	 */
+	public @NotNull MessagePackWriter writeMapHeader(int size) throws IOException {
+		if (size < 16) {
+			out.writeByte(0x80 | size);
+		} else if (size < 0x10000) {
+			out.writeByte(0xde);
+			out.writeShort(size);
+		} else {
+			out.writeByte(0xdf);
+			out.writeInt(size);
+		}
+		return this;
+	}
+	
+	/**
+	 * Write any supported value, including (nested) maps and collections.
+	 * Unknown types are written as their string representation.
+	 */
+	public @NotNull MessagePackWriter writeValue(@Nullable Object value) throws IOException {
+		if (value == null) {
+			writeNil();
+		} else if (value instanceof Boolean) {
+			write((boolean) value);
+		} else if (value instanceof Long || value instanceof Integer
+				|| value instanceof Short || value instanceof Byte) {
+			write(((Number) value).longValue());
+		} else if (value instanceof Number) {
+			write(((Number) value).doubleValue());
+		} else if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			writeMapHeader(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				write(String.valueOf(entry.getKey()));
+				writeValue(entry.getValue());
+			}
+		} else if (value instanceof Collection) {
+			Collection<?> collection = (Collection<?>) value;
+			writeArrayHeader(collection.size());
+			for (Object element : collection) writeValue(element);
+		} else {
+			write(value.toString());
+		}
+		return this;
+	}
+	
+}
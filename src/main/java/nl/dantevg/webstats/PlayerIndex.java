@@ -0,0 +1,121 @@
+package nl.dantevg.webstats;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Index of the entries in one (immutable) set of stats by name and UUID,
+ * with the rank of every entry in every column, so that the stats of a single
+ * player can be looked up without going through all entries.
+ * <p>
+ * Ranks are 1 for the highest score in a column (sorted like
+ * {@link SortIndex}), and entries with the same score get the same rank.
+ * Entries without a score in a column have no rank in that column.
+ */
+public class PlayerIndex {
+	private final @NotNull StatData.Stats stats;
+	
+	// Lower-case entry name -> entry name, and UUID -> entry name
+	private final Map<String, String> names = new HashMap<>();
+	private final Map<UUID, String> uuids = new HashMap<>();
+	private final Map<String, UUID> uuidsByName = new HashMap<>();
+	
+	// Entry name -> row, and the rank of each row per column (0 for no rank)
+	private final Map<String, Integer> rows = new HashMap<>();
+	private final String[] columns;
+	private final int[][] ranks;
+	
+	PlayerIndex(@NotNull StatData.Stats stats) {
+		this.stats = stats;
+		
+		for (String entry : stats.entries) {
+			rows.put(entry, rows.size());
+			names.put(entry.toLowerCase(Locale.ROOT), entry);
+		}
+		
+		if (WebStats.playerRegistry != null) {
+			for (String entry : stats.entries) {
+				UUID uuid = WebStats.playerRegistry.getUUID(entry);
+				if (uuid == null) continue;
+				uuidsByName.put(entry, uuid);
+				uuids.put(uuid, entry);
+			}
+		}
+		
+		columns = stats.scores.columnKeySet().toArray(new String[0]);
+		ranks = new int[columns.length][];
+		for (int c = 0; c < columns.length; c++) ranks[c] = rank(columns[c]);
+	}
+	
+	private int[] rank(@NotNull String column) {
+		int[] columnRanks = new int[rows.size()];
+		List<String> sorted = stats.getSortIndex().getSorted(column, WebStatsConfig.SortDirection.DESCENDING);
+		String previous = null;
+		int rank = 0;
+		for (int i = 0; i < sorted.size(); i++) {
+			String score = stats.scores.get(sorted.get(i), column);
+			// Entries without a score are sorted last
+			if (score == null) break;
+			if (!score.equals(previous)) rank = i + 1;
+			columnRanks[rows.get(sorted.get(i))] = rank;
+			previous = score;
+		}
+		return columnRanks;
+	}
+	
+	/**
+	 * Find an entry by its name (case-insensitive) or by the UUID of the
+	 * player, with or without dashes.
+	 *
+	 * @param nameOrUUID the name or UUID of the player
+	 * @return the entry name, or null if there is no such entry
+	 */
+	public @Nullable String find(@NotNull String nameOrUUID) {
+		String name = names.get(nameOrUUID.toLowerCase(Locale.ROOT));
+		if (name != null) return name;
+		UUID uuid = parseUUID(nameOrUUID);
+		return (uuid != null) ? uuids.get(uuid) : null;
+	}
+	
+	public @Nullable UUID getUUID(@NotNull String entry) {
+		return uuidsByName.get(entry);
+	}
+	
+	/**
+	 * @param entry the entry name
+	 * @return the scores of the entry, by column name
+	 */
+	public @NotNull Map<String, String> getScores(@NotNull String entry) {
+		return stats.scores.row(entry);
+	}
+	
+	/**
+	 * @param entry the entry name
+	 * @return the rank of the entry in every column it has a score in
+	 */
+	public @NotNull Map<String, Integer> getRanks(@NotNull String entry) {
+		Integer row = rows.get(entry);
+		Map<String, Integer> entryRanks = new LinkedHashMap<>();
+		if (row == null) return entryRanks;
+		for (int c = 0; c < columns.length; c++) {
+			if (ranks[c][row] > 0) entryRanks.put(columns[c], ranks[c][row]);
+		}
+		return entryRanks;
+	}
+	
+	private static @Nullable UUID parseUUID(@NotNull String uuid) {
+		if (uuid.length() == 32) {
+			uuid = uuid.substring(0, 8) + "-" + uuid.substring(8, 12) + "-" + uuid.substring(12, 16)
+					+ "-" + uuid.substring(16, 20) + "-" + uuid.substring(20);
+		}
+		if (uuid.length() != 36) return null;
+		try {
+			return UUID.fromString(uuid);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+	
+}
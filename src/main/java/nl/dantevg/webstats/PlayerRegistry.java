@@ -0,0 +1,213 @@
+package nl.dantevg.webstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * All players that have played on the server, with their name and when they
+ * last played. Getting all offline players from Bukkit reads the player data
+ * file of every player, so this is only done once, when there is no stored
+ * registry yet. After that, the registry is kept up-to-date by join and quit
+ * events and stored in a file in the plugin folder.
+ * <p>
+ * Bukkit has no event for name changes, a player's new name is picked up when
+ * they join. When multiple players have had the same name, the name belongs
+ * to the one who played last.
+ */
+public class PlayerRegistry implements Listener {
+	private static final String FILENAME = "players.dat";
+	private static final int FILE_MAGIC = 0x57535052; // "WSPR"
+	private static final int FILE_VERSION = 1;
+	private static final long SAVE_INTERVAL_TICKS = 5 * 60 * 20; // 5 minutes
+	
+	private final @NotNull WebStats plugin;
+	private final @NotNull File file;
+	
+	private final Map<UUID, Entry> players = new ConcurrentHashMap<>();
+	private final Map<String, UUID> uuidsByName = new ConcurrentHashMap<>(); // Lower-case name -> UUID
+	private volatile boolean changed = false;
+	
+	public PlayerRegistry(@NotNull WebStats plugin) {
+		this.plugin = plugin;
+		file = new File(plugin.getDataFolder(), FILENAME);
+		
+		if (!load()) scan();
+		// Players that are online now (after a reload) may not have been stored
+		for (Player player : Bukkit.getOnlinePlayers()) update(player, System.currentTimeMillis());
+		
+		Bukkit.getPluginManager().registerEvents(this, plugin);
+		Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+			if (changed) save();
+		}, SAVE_INTERVAL_TICKS, SAVE_INTERVAL_TICKS);
+	}
+	
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerJoin(PlayerJoinEvent event) {
+		update(event.getPlayer(), System.currentTimeMillis());
+	}
+	
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerQuit(PlayerQuitEvent event) {
+		update(event.getPlayer(), System.currentTimeMillis());
+	}
+	
+	/**
+	 * Get the UUID of the player who has (or last had) a name.
+	 *
+	 * @param name the name of the player, case-insensitive
+	 * @return the UUID, or null if no player with that name has played
+	 */
+	public @Nullable UUID getUUID(@NotNull String name) {
+		return uuidsByName.get(name.toLowerCase(Locale.ROOT));
+	}
+	
+	public @Nullable String getName(@NotNull UUID uuid) {
+		Entry entry = players.get(uuid);
+		return (entry != null) ? entry.name : null;
+	}
+	
+	/**
+	 * @return the time the player last joined or left in milliseconds since
+	 * the epoch, or 0 if unknown
+	 */
+	public long getLastPlayed(@NotNull UUID uuid) {
+		Entry entry = players.get(uuid);
+		return (entry != null) ? entry.lastPlayed : 0;
+	}
+	
+	/**
+	 * @return the UUIDs of all players that have played on the server
+	 */
+	public @NotNull Set<UUID> getUUIDs() {
+		return Collections.unmodifiableSet(players.keySet());
+	}
+	
+	private void update(@NotNull OfflinePlayer player, long lastPlayed) {
+		put(player.getUniqueId(), player.getName(), lastPlayed);
+		changed = true;
+	}
+	
+	private void put(@NotNull UUID uuid, @Nullable String name, long lastPlayed) {
+		Entry previous = players.get(uuid);
+		if (name == null && previous != null) name = previous.name;
+		if (previous != null) lastPlayed = Math.max(lastPlayed, previous.lastPlayed);
+		players.put(uuid, new Entry(name, lastPlayed));
+		
+		// Name change: the old name no longer belongs to this player
+		if (previous != null && previous.name != null && !previous.name.equalsIgnoreCase(name)) {
+			uuidsByName.remove(previous.name.toLowerCase(Locale.ROOT), uuid);
+		}
+		if (name == null) return;
+		
+		String key = name.toLowerCase(Locale.ROOT);
+		UUID holder = uuidsByName.get(key);
+		if (holder == null || holder.equals(uuid) || getLastPlayed(holder) <= lastPlayed) {
+			uuidsByName.put(key, uuid);
+		}
+	}
+	
+	// Get all players from Bukkit (and from Essentials, which also knows
+	// players in offline mode). This reads the player data of every player.
+	private void scan() {
+		Set<OfflinePlayer> offlinePlayers = (!Bukkit.getOnlineMode() && WebStats.hasEssentials)
+				? EssentialsHelper.getOfflinePlayers() : new HashSet<>();
+		offlinePlayers.addAll(Arrays.asList(Bukkit.getOfflinePlayers()));
+		if (offlinePlayers.size() > 100) {
+			WebStats.logger.log(Level.INFO, "Caching player names of " + offlinePlayers.size() + " players");
+		}
+		for (OfflinePlayer player : offlinePlayers) {
+			put(player.getUniqueId(), player.getName(), player.getLastPlayed());
+		}
+		changed = true;
+	}
+	
+	private boolean load() {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION) {
+				WebStats.logger.log(Level.WARNING, file.getName() + " has an unknown format, rebuilding it");
+				return false;
+			}
+			int n = input.readInt();
+			for (int i = 0; i < n; i++) {
+				UUID uuid = new UUID(input.readLong(), input.readLong());
+				long lastPlayed = input.readLong();
+				String name = input.readBoolean() ? input.readUTF() : null;
+				put(uuid, name, lastPlayed);
+			}
+			WebStats.logger.log(Level.INFO, "Loaded " + n + " players");
+			return true;
+		} catch (FileNotFoundException e) {
+			// First start, the file will be created
+			return false;
+		} catch (IOException e) {
+			WebStats.logger.log(Level.WARNING, "Could not read " + file.getName() + ", rebuilding it", e);
+			players.clear();
+			uuidsByName.clear();
+			return false;
+		}
+	}
+	
+	private synchronized void save() {
+		changed = false;
+		// Write to a temporary file first, so a crash does not leave a broken file
+		File tempFile = new File(file.getPath() + ".tmp");
+		plugin.getDataFolder().mkdirs();
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+			Map<UUID, Entry> copy = new HashMap<>(players);
+			output.writeInt(FILE_MAGIC);
+			output.writeInt(FILE_VERSION);
+			output.writeInt(copy.size());
+			for (Map.Entry<UUID, Entry> player : copy.entrySet()) {
+				output.writeLong(player.getKey().getMostSignificantBits());
+				output.writeLong(player.getKey().getLeastSignificantBits());
+				output.writeLong(player.getValue().lastPlayed);
+				output.writeBoolean(player.getValue().name != null);
+				if (player.getValue().name != null) output.writeUTF(player.getValue().name);
+			}
+		} catch (IOException e) {
+			changed = true;
+			WebStats.logger.log(Level.WARNING, "Could not store " + file.getName(), e);
+			return;
+		}
+		try {
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			changed = true;
+			WebStats.logger.log(Level.WARNING, "Could not store " + file.getName(), e);
+		}
+	}
+	
+	public void disable() {
+		if (changed) save();
+	}
+	
+	public @NotNull String debug() {
+		return "Player registry: " + players.size() + " players, " + uuidsByName.size() + " names";
+	}
+	
+	private static class Entry {
+		final @Nullable String name;
+		final long lastPlayed;
+		
+		Entry(@Nullable String name, long lastPlayed) {
+			this.name = name;
+			this.lastPlayed = lastPlayed;
+		}
+	}
+	
+}
@@ -0,0 +1,97 @@
+package nl.dantevg.webstats;
+
+import com.google.common.collect.Sets;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * The scores that differ between two score tables: per column, the entries
+ * whose score was added or changed, and the entries whose score was removed.
+ * This is computed once for every new snapshot, so that the leaderboards and
+ * deltas do not each need to compare all scores again.
+ */
+public class ScoreChanges {
+	public final @NotNull ScoreTable from;
+	public final @NotNull ScoreTable to;
+	
+	// Column -> entries with an added or changed score
+	private final Map<String, List<String>> changed = new HashMap<>();
+	// Column -> entries of which the score was removed
+	private final Map<String, List<String>> removed = new HashMap<>();
+	
+	private ScoreChanges(@NotNull ScoreTable from, @NotNull ScoreTable to) {
+		this.from = from;
+		this.to = to;
+	}
+	
+	/**
+	 * Compare all scores of two tables, without converting them to strings.
+	 *
+	 * @param from the older scores
+	 * @param to   the newer scores
+	 * @return the scores that changed
+	 */
+	public static @NotNull ScoreChanges between(@NotNull ScoreTable from, @NotNull ScoreTable to) {
+		ScoreChanges changes = new ScoreChanges(from, to);
+		for (String column : Sets.union(from.columnKeySet(), to.columnKeySet())) changes.compare(column);
+		return changes;
+	}
+	
+	/**
+	 * Compare the scores in one column of two tables. The result only
+	 * contains changes in that column.
+	 *
+	 * @param from   the older scores
+	 * @param to     the newer scores
+	 * @param column the column to compare
+	 * @return the scores in the column that changed
+	 */
+	public static @NotNull ScoreChanges between(@NotNull ScoreTable from, @NotNull ScoreTable to, @NotNull String column) {
+		ScoreChanges changes = new ScoreChanges(from, to);
+		changes.compare(column);
+		return changes;
+	}
+	
+	private void compare(@NotNull String column) {
+		for (String entry : to.entriesIn(column)) {
+			if (!to.sameScore(entry, column, from)) {
+				changed.computeIfAbsent(column, c -> new ArrayList<>()).add(entry);
+			}
+		}
+		for (String entry : from.entriesIn(column)) {
+			if (!to.contains(entry, column)) {
+				removed.computeIfAbsent(column, c -> new ArrayList<>()).add(entry);
+			}
+		}
+	}
+	
+	public boolean isEmpty() {
+		return changed.isEmpty() && removed.isEmpty();
+	}
+	
+	public @NotNull Set<String> getChangedColumns() {
+		return Collections.unmodifiableSet(changed.keySet());
+	}
+	
+	public @NotNull Set<String> getRemovedColumns() {
+		return Collections.unmodifiableSet(removed.keySet());
+	}
+	
+	/**
+	 * @param column the column name
+	 * @return the entries of which the score in the column was added or changed
+	 */
+	public @NotNull List<String> getChanged(@NotNull String column) {
+		return Collections.unmodifiableList(changed.getOrDefault(column, Collections.emptyList()));
+	}
+	
+	/**
+	 * @param column the column name
+	 * @return the entries of which the score in the column was removed
+	 */
+	public @NotNull List<String> getRemoved(@NotNull String column) {
+		return Collections.unmodifiableList(removed.getOrDefault(column, Collections.emptyList()));
+	}
+	
+}
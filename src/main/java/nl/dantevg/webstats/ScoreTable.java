@@ -0,0 +1,635 @@
+package nl.dantevg.webstats;
+
+import com.google.common.collect.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Immutable, column-oriented table of scores. Entry and column names are
+ * stored once (in a dictionary), and every column stores its scores in an
+ * array. Columns in which all scores are integers or decimal numbers store
+ * them as primitive {@code long}s or {@code double}s, other columns store
+ * strings.
+ * <p>
+ * Numbers are only stored as numbers when converting them back gives exactly
+ * the same string, so reading a score always returns the original string.
+ * <p>
+ * Modifying methods throw {@link UnsupportedOperationException}, like the
+ * Guava immutable collections. Use a {@link Builder} to create a ScoreTable.
+ */
+public final class ScoreTable implements Table<String, String, String> {
+	// Names of entries and columns come back in every collection, so intern
+	// them to share the same String instances between snapshots
+	private static final Interner<String> NAMES = Interners.newWeakInterner();
+	
+	private final ImmutableMap<String, Integer> rowIndices;
+	private final ImmutableMap<String, Integer> columnIndices;
+	private final String[] rowKeys;
+	private final Column[] columns;
+	private final int size;
+	
+	private ScoreTable(ImmutableMap<String, Integer> rowIndices,
+	                   ImmutableMap<String, Integer> columnIndices,
+	                   Column[] columns) {
+		this.rowIndices = rowIndices;
+		this.columnIndices = columnIndices;
+		this.rowKeys = rowIndices.keySet().toArray(new String[0]);
+		this.columns = columns;
+		int size = 0;
+		for (Column column : columns) size += column.size;
+		this.size = size;
+	}
+	
+	public static @NotNull Builder builder() {
+		return new Builder();
+	}
+	
+	public static @NotNull ScoreTable copyOf(@NotNull Table<String, String, String> table) {
+		if (table instanceof ScoreTable) return (ScoreTable) table;
+		return builder().putAll(table).build();
+	}
+	
+	/**
+	 * Whether all scores in a column are stored as numbers.
+	 *
+	 * @param column the column name
+	 * @return whether the column is numeric, false if it does not exist
+	 */
+	public boolean isNumeric(@NotNull String column) {
+		Integer c = columnIndices.get(column);
+		return c != null && columns[c] instanceof NumberColumn;
+	}
+	
+	/**
+	 * Get a score as a number, without converting it to a string first.
+	 *
+	 * @param row    the entry name
+	 * @param column the column name
+	 * @return the score, or NaN if it does not exist or is not numeric
+	 * @see #isNumeric(String)
+	 */
+	public double getNumber(@NotNull String row, @NotNull String column) {
+		Integer r = rowIndices.get(row);
+		Integer c = columnIndices.get(column);
+		if (r == null || c == null || !columns[c].has(r)) return Double.NaN;
+		return columns[c].getNumber(r);
+	}
+	
+	/**
+	 * Check whether a score is the same in this table and another table,
+	 * without converting numbers to strings.
+	 *
+	 * @param row    the entry name
+	 * @param column the column name
+	 * @param that   the other table
+	 * @return whether both tables have the same score (or both have none)
+	 */
+	public boolean sameScore(@NotNull String row, @NotNull String column, @NotNull ScoreTable that) {
+		Column a = this.getColumn(column), b = that.getColumn(column);
+		Integer ra = this.rowIndices.get(row), rb = that.rowIndices.get(row);
+		boolean hasA = a != null && ra != null && a.has(ra);
+		boolean hasB = b != null && rb != null && b.has(rb);
+		if (!hasA || !hasB) return hasA == hasB;
+		return a.sameValue(ra, b, rb);
+	}
+	
+	/**
+	 * Get the entries that have a score in a column, without reading the
+	 * scores. Unlike {@code column(column).keySet()}, this does not convert
+	 * numbers to strings.
+	 *
+	 * @param column the column name
+	 * @return the entry names, none if the column does not exist
+	 */
+	public @NotNull Iterable<String> entriesIn(@NotNull String column) {
+		Column c = getColumn(column);
+		if (c == null) return Collections.emptyList();
+		return () -> new AbstractIterator<String>() {
+			private int r = -1;
+			
+			@Override
+			protected String computeNext() {
+				r = c.present.nextSetBit(r + 1);
+				return (r >= 0) ? rowKeys[r] : endOfData();
+			}
+		};
+	}
+	
+	/**
+	 * Write the scores in MessagePack, as an array with a column for every
+	 * column in {@link #columnKeySet()}. Each column is an array with the
+	 * scores of the given entries, in that order, and nil for entries without
+	 * a score. Integers are written as integers, other scores as strings.
+	 *
+	 * @param out     the writer to write to
+	 * @param entries the entries to write the scores of
+	 * @throws IOException
+	 */
+	public void writeMessagePack(@NotNull MessagePackWriter out, @NotNull Collection<String> entries) throws IOException {
+		int[] rows = new int[entries.size()];
+		int i = 0;
+		for (String entry : entries) {
+			Integer r = rowIndices.get(entry);
+			rows[i++] = (r != null) ? r : -1;
+		}
+		
+		out.writeArrayHeader(columns.length);
+		for (Column column : columns) {
+			out.writeArrayHeader(rows.length);
+			for (int r : rows) {
+				if (r >= 0 && column.has(r)) column.write(out, r);
+				else out.writeNil();
+			}
+		}
+	}
+	
+	private @Nullable Column getColumn(@Nullable Object column) {
+		Integer c = columnIndices.get(column);
+		return (c != null) ? columns[c] : null;
+	}
+	
+	@Override
+	public boolean contains(@Nullable Object rowKey, @Nullable Object columnKey) {
+		Integer r = rowIndices.get(rowKey);
+		Column column = getColumn(columnKey);
+		return r != null && column != null && column.has(r);
+	}
+	
+	@Override
+	public boolean containsRow(@Nullable Object rowKey) {
+		return rowIndices.containsKey(rowKey);
+	}
+	
+	@Override
+	public boolean containsColumn(@Nullable Object columnKey) {
+		return columnIndices.containsKey(columnKey);
+	}
+	
+	@Override
+	public boolean containsValue(@Nullable Object value) {
+		return value != null && values().contains(value);
+	}
+	
+	@Override
+	public @Nullable String get(@Nullable Object rowKey, @Nullable Object columnKey) {
+		Integer r = rowIndices.get(rowKey);
+		Column column = getColumn(columnKey);
+		return (r != null && column != null && column.has(r)) ? column.get(r) : null;
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public String put(@NotNull String rowKey, @NotNull String columnKey, @NotNull String value) {
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public void putAll(@NotNull Table<? extends String, ? extends String, ? extends String> table) {
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public String remove(@Nullable Object rowKey, @Nullable Object columnKey) {
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public @NotNull Map<String, String> row(@NotNull String rowKey) {
+		Integer r = rowIndices.get(rowKey);
+		return (r != null) ? new RowMap(r) : Collections.emptyMap();
+	}
+	
+	@Override
+	public @NotNull Map<String, String> column(@NotNull String columnKey) {
+		Column column = getColumn(columnKey);
+		return (column != null) ? new ColumnMap(column) : Collections.emptyMap();
+	}
+	
+	@Override
+	public @NotNull Set<Cell<String, String, String>> cellSet() {
+		return new AbstractSet<Cell<String, String, String>>() {
+			@Override
+			public @NotNull Iterator<Cell<String, String, String>> iterator() {
+				return new AbstractIterator<Cell<String, String, String>>() {
+					private int c = 0;
+					private int r = -1;
+					
+					@Override
+					protected Cell<String, String, String> computeNext() {
+						while (c < columns.length) {
+							r = columns[c].present.nextSetBit(r + 1);
+							if (r >= 0) {
+								return Tables.immutableCell(rowKeys[r], columns[c].name, columns[c].get(r));
+							}
+							c++;
+						}
+						return endOfData();
+					}
+				};
+			}
+			
+			@Override
+			public boolean contains(@Nullable Object o) {
+				if (!(o instanceof Cell)) return false;
+				Cell<?, ?, ?> cell = (Cell<?, ?, ?>) o;
+				String value = get(cell.getRowKey(), cell.getColumnKey());
+				return value != null && value.equals(cell.getValue());
+			}
+			
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+	
+	@Override
+	public @NotNull Set<String> rowKeySet() {
+		return rowIndices.keySet();
+	}
+	
+	@Override
+	public @NotNull Set<String> columnKeySet() {
+		return columnIndices.keySet();
+	}
+	
+	@Override
+	public @NotNull Collection<String> values() {
+		return new AbstractCollection<String>() {
+			@Override
+			public @NotNull Iterator<String> iterator() {
+				return Iterators.transform(cellSet().iterator(), Cell::getValue);
+			}
+			
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+	
+	@Override
+	public @NotNull Map<String, Map<String, String>> rowMap() {
+		return Maps.asMap(rowKeySet(), this::row);
+	}
+	
+	@Override
+	public @NotNull Map<String, Map<String, String>> columnMap() {
+		return Maps.asMap(columnKeySet(), this::column);
+	}
+	
+	@Override
+	public boolean equals(@Nullable Object obj) {
+		if (obj == this) return true;
+		if (obj instanceof ScoreTable) {
+			ScoreTable that = (ScoreTable) obj;
+			if (this.size != that.size || !this.columnKeySet().equals(that.columnKeySet())) return false;
+			for (Column a : columns) {
+				Column b = that.getColumn(a.name);
+				if (b == null || a.size != b.size) return false;
+				for (int r = a.present.nextSetBit(0); r >= 0; r = a.present.nextSetBit(r + 1)) {
+					Integer rb = that.rowIndices.get(rowKeys[r]);
+					if (rb == null || !b.has(rb) || !a.sameValue(r, b, rb)) return false;
+				}
+			}
+			return true;
+		}
+		return obj instanceof Table && cellSet().equals(((Table<?, ?, ?>) obj).cellSet());
+	}
+	
+	@Override
+	public int hashCode() {
+		return cellSet().hashCode();
+	}
+	
+	@Override
+	public String toString() {
+		return rowMap().toString();
+	}
+	
+	// Read-only view of one entry
+	private class RowMap extends AbstractMap<String, String> {
+		private final int r;
+		
+		RowMap(int r) {
+			this.r = r;
+		}
+		
+		@Override
+		public @Nullable String get(@Nullable Object key) {
+			Column column = getColumn(key);
+			return (column != null && column.has(r)) ? column.get(r) : null;
+		}
+		
+		@Override
+		public boolean containsKey(@Nullable Object key) {
+			Column column = getColumn(key);
+			return column != null && column.has(r);
+		}
+		
+		@Override
+		public @NotNull Set<Entry<String, String>> entrySet() {
+			return new AbstractSet<Entry<String, String>>() {
+				@Override
+				public @NotNull Iterator<Entry<String, String>> iterator() {
+					return new AbstractIterator<Entry<String, String>>() {
+						private int c = 0;
+						
+						@Override
+						protected Entry<String, String> computeNext() {
+							while (c < columns.length) {
+								Column column = columns[c++];
+								if (column.has(r)) return Maps.immutableEntry(column.name, column.get(r));
+							}
+							return endOfData();
+						}
+					};
+				}
+				
+				@Override
+				public int size() {
+					int n = 0;
+					for (Column column : columns) if (column.has(r)) n++;
+					return n;
+				}
+			};
+		}
+	}
+	
+	// Read-only view of one column
+	private class ColumnMap extends AbstractMap<String, String> {
+		private final Column column;
+		
+		ColumnMap(Column column) {
+			this.column = column;
+		}
+		
+		@Override
+		public @Nullable String get(@Nullable Object key) {
+			Integer r = rowIndices.get(key);
+			return (r != null && column.has(r)) ? column.get(r) : null;
+		}
+		
+		@Override
+		public boolean containsKey(@Nullable Object key) {
+			Integer r = rowIndices.get(key);
+			return r != null && column.has(r);
+		}
+		
+		@Override
+		public @NotNull Set<Entry<String, String>> entrySet() {
+			return new AbstractSet<Entry<String, String>>() {
+				@Override
+				public @NotNull Iterator<Entry<String, String>> iterator() {
+					return new AbstractIterator<Entry<String, String>>() {
+						private int r = -1;
+						
+						@Override
+						protected Entry<String, String> computeNext() {
+							r = column.present.nextSetBit(r + 1);
+							if (r < 0) return endOfData();
+							return Maps.immutableEntry(rowKeys[r], column.get(r));
+						}
+					};
+				}
+				
+				@Override
+				public int size() {
+					return column.size;
+				}
+			};
+		}
+	}
+	
+	private abstract static class Column {
+		final String name;
+		final BitSet present; // Which rows have a score in this column
+		final int size;
+		
+		Column(String name, BitSet present) {
+			this.name = name;
+			this.present = present;
+			this.size = present.cardinality();
+		}
+		
+		boolean has(int row) {
+			return present.get(row);
+		}
+		
+		abstract @NotNull String get(int row);
+		
+		double getNumber(int row) {
+			return Double.NaN;
+		}
+		
+		boolean sameValue(int row, @NotNull Column that, int thatRow) {
+			return get(row).equals(that.get(thatRow));
+		}
+		
+		// Doubles are written as strings as well, JavaScript would not
+		// convert them back to the same string as Java
+		void write(@NotNull MessagePackWriter out, int row) throws IOException {
+			out.write(get(row));
+		}
+	}
+	
+	private abstract static class NumberColumn extends Column {
+		NumberColumn(String name, BitSet present) {
+			super(name, present);
+		}
+	}
+	
+	private static class LongColumn extends NumberColumn {
+		private final long[] values;
+		
+		LongColumn(String name, BitSet present, long[] values) {
+			super(name, present);
+			this.values = values;
+		}
+		
+		@Override
+		@NotNull String get(int row) {
+			return Long.toString(values[row]);
+		}
+		
+		@Override
+		double getNumber(int row) {
+			return values[row];
+		}
+		
+		@Override
+		void write(@NotNull MessagePackWriter out, int row) throws IOException {
+			out.write(values[row]);
+		}
+		
+		@Override
+		boolean sameValue(int row, @NotNull Column that, int thatRow) {
+			if (that instanceof LongColumn) return values[row] == ((LongColumn) that).values[thatRow];
+			return super.sameValue(row, that, thatRow);
+		}
+	}
+	
+	private static class DoubleColumn extends NumberColumn {
+		private final double[] values;
+		
+		DoubleColumn(String name, BitSet present, double[] values) {
+			super(name, present);
+			this.values = values;
+		}
+		
+		@Override
+		@NotNull String get(int row) {
+			return Double.toString(values[row]);
+		}
+		
+		@Override
+		double getNumber(int row) {
+			return values[row];
+		}
+		
+		@Override
+		boolean sameValue(int row, @NotNull Column that, int thatRow) {
+			if (that instanceof DoubleColumn) {
+				return Double.doubleToLongBits(values[row]) == Double.doubleToLongBits(((DoubleColumn) that).values[thatRow]);
+			}
+			return super.sameValue(row, that, thatRow);
+		}
+	}
+	
+	private static class StringColumn extends Column {
+		private final String[] values;
+		
+		StringColumn(String name, BitSet present, String[] values) {
+			super(name, present);
+			this.values = values;
+		}
+		
+		@Override
+		@NotNull String get(int row) {
+			return values[row];
+		}
+	}
+	
+	/**
+	 * Collects scores into a new ScoreTable. When a score is put multiple
+	 * times, the last one is kept (like {@link Table#put}).
+	 */
+	public static class Builder {
+		private final Map<String, Integer> rowIndices = new LinkedHashMap<>();
+		private final Map<String, Integer> columnIndices = new LinkedHashMap<>();
+		private final List<ColumnBuilder> columns = new ArrayList<>();
+		
+		private Builder() {
+		}
+		
+		public @NotNull Builder put(@NotNull String row, @NotNull String column, @NotNull String value) {
+			Integer r = rowIndices.get(row);
+			if (r == null) {
+				r = rowIndices.size();
+				rowIndices.put(NAMES.intern(row), r);
+			}
+			Integer c = columnIndices.get(column);
+			if (c == null) {
+				c = columns.size();
+				columnIndices.put(NAMES.intern(column), c);
+				columns.add(new ColumnBuilder());
+			}
+			columns.get(c).add(r, value);
+			return this;
+		}
+		
+		public @NotNull Builder putAll(@NotNull Table<String, String, String> table) {
+			for (Cell<String, String, String> cell : table.cellSet()) {
+				put(cell.getRowKey(), cell.getColumnKey(), cell.getValue());
+			}
+			return this;
+		}
+		
+		public @NotNull ScoreTable build() {
+			int nRows = rowIndices.size();
+			Column[] built = new Column[columns.size()];
+			int c = 0;
+			for (String name : columnIndices.keySet()) {
+				built[c] = columns.get(c).build(NAMES.intern(name), nRows);
+				c++;
+			}
+			return new ScoreTable(ImmutableMap.copyOf(rowIndices), ImmutableMap.copyOf(columnIndices), built);
+		}
+	}
+	
+	// Scores of one column, in the order they were put
+	private static class ColumnBuilder {
+		private int[] rows = new int[16];
+		private String[] values = new String[16];
+		private int n = 0;
+		
+		void add(int row, @NotNull String value) {
+			if (n == rows.length) {
+				rows = Arrays.copyOf(rows, n * 2);
+				values = Arrays.copyOf(values, n * 2);
+			}
+			rows[n] = row;
+			values[n] = value;
+			n++;
+		}
+		
+		@NotNull Column build(@NotNull String name, int nRows) {
+			BitSet present = new BitSet(nRows);
+			String[] dense = new String[nRows];
+			for (int i = 0; i < n; i++) {
+				present.set(rows[i]);
+				dense[rows[i]] = values[i];
+			}
+			
+			// Store as numbers only when every score converts back exactly
+			long[] longs = new long[nRows];
+			boolean allLongs = true;
+			for (int r = present.nextSetBit(0); r >= 0 && allLongs; r = present.nextSetBit(r + 1)) {
+				try {
+					longs[r] = Long.parseLong(dense[r]);
+					allLongs = Long.toString(longs[r]).equals(dense[r]);
+				} catch (NumberFormatException e) {
+					allLongs = false;
+				}
+			}
+			if (allLongs) return new LongColumn(name, present, longs);
+			
+			double[] doubles = new double[nRows];
+			boolean allDoubles = true;
+			for (int r = present.nextSetBit(0); r >= 0 && allDoubles; r = present.nextSetBit(r + 1)) {
+				try {
+					doubles[r] = Double.parseDouble(dense[r]);
+					allDoubles = Double.toString(doubles[r]).equals(dense[r]);
+				} catch (NumberFormatException e) {
+					allDoubles = false;
+				}
+			}
+			if (allDoubles) return new DoubleColumn(name, present, doubles);
+			
+			// Many string scores are repeated (ranks, yes/no, ...), store each once
+			Map<String, String> dictionary = new HashMap<>();
+			for (int r = present.nextSetBit(0); r >= 0; r = present.nextSetBit(r + 1)) {
+				dense[r] = dictionary.computeIfAbsent(dense[r], s -> s);
+			}
+			return new StringColumn(name, present, dense);
+		}
+	}
+	
+}
@@ -0,0 +1,145 @@
+package nl.dantevg.webstats;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Case-insensitive prefix search over the entry names. The names are kept in
+ * an array sorted by their lower-case form, so a search is a binary search
+ * followed by reading the matching names in order.
+ * <p>
+ * When new stats come in, the index is updated from the previous one by
+ * removing the entries that are gone and merging in the new entries, instead
+ * of sorting all entries again.
+ */
+public class SearchIndex {
+	private volatile @Nullable Index index;
+	
+	/**
+	 * Find the entries whose name starts with a prefix, ignoring case.
+	 *
+	 * @param snapshot the snapshot to search the entries of
+	 * @param prefix   the prefix to search for
+	 * @param limit    the maximum number of entries to return
+	 * @return at most {@code limit} entry names, in case-insensitive order
+	 */
+	public @NotNull List<String> search(@NotNull StatCollector.Snapshot snapshot, @NotNull String prefix, int limit) {
+		Index current = index;
+		if (current == null || current.version < snapshot.version) current = update(snapshot);
+		
+		String key = prefix.toLowerCase(Locale.ROOT);
+		int i = lowerBound(current.keys, key);
+		List<String> result = new ArrayList<>(Math.min(limit, 16));
+		for (; i < current.keys.length && result.size() < limit; i++) {
+			if (!current.keys[i].startsWith(key)) break;
+			result.add(current.names[i]);
+		}
+		return result;
+	}
+	
+	// Index of the first key that is not smaller than the given key. Unlike
+	// Arrays.binarySearch, this finds the first of multiple equal keys
+	private static int lowerBound(String[] keys, @NotNull String key) {
+		int low = 0, high = keys.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid].compareTo(key) < 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+	
+	public @NotNull String debug() {
+		Index current = index;
+		return "Search index: " + ((current != null) ? current.names.length + " entries" : "not built yet");
+	}
+	
+	private synchronized @NotNull Index update(@NotNull StatCollector.Snapshot snapshot) {
+		Index previous = index;
+		// Another thread may have updated it already
+		if (previous != null && previous.version >= snapshot.version) return previous;
+		
+		Index updated;
+		if (previous == null) {
+			updated = new Index(snapshot.version, snapshot.stats.entries, sorted(snapshot.stats.entries));
+		} else if (previous.entries == snapshot.stats.entries) {
+			// Only the online players changed
+			updated = new Index(snapshot.version, previous.entries, previous.names, previous.keys);
+		} else {
+			updated = merge(previous, snapshot.version, snapshot.stats.entries);
+		}
+		index = updated;
+		return updated;
+	}
+	
+	private static @NotNull Index merge(@NotNull Index previous, long version, @NotNull Set<String> entries) {
+		List<String> added = new ArrayList<>();
+		for (String entry : entries) {
+			if (!previous.entries.contains(entry)) added.add(entry);
+		}
+		// Sorting everything is faster when most entries are new
+		if (added.size() > entries.size() / 2) return new Index(version, entries, sorted(entries));
+		
+		Index addedIndex = new Index(version, entries, sorted(added));
+		String[] names = new String[entries.size()];
+		String[] keys = new String[entries.size()];
+		int i = 0, j = 0, n = 0;
+		while (i < previous.names.length || j < addedIndex.names.length) {
+			if (i < previous.names.length && !entries.contains(previous.names[i])) {
+				i++; // Removed entry
+			} else if (j >= addedIndex.names.length
+					|| (i < previous.names.length && compare(previous, i, addedIndex, j) <= 0)) {
+				keys[n] = previous.keys[i];
+				names[n++] = previous.names[i++];
+			} else {
+				keys[n] = addedIndex.keys[j];
+				names[n++] = addedIndex.names[j++];
+			}
+		}
+		return new Index(version, entries, names, keys);
+	}
+	
+	// Sort by the lower-case names, and by the names themselves when those
+	// are the same
+	private static int compare(@NotNull Index a, int i, @NotNull Index b, int j) {
+		int result = a.keys[i].compareTo(b.keys[j]);
+		return (result != 0) ? result : a.names[i].compareTo(b.names[j]);
+	}
+	
+	// Returns pairs of the lower-case name and the name, sorted
+	private static String[][] sorted(@NotNull Collection<String> entries) {
+		String[][] pairs = new String[entries.size()][];
+		int i = 0;
+		for (String entry : entries) pairs[i++] = new String[]{entry.toLowerCase(Locale.ROOT), entry};
+		Arrays.sort(pairs, (a, b) -> {
+			int result = a[0].compareTo(b[0]);
+			return (result != 0) ? result : a[1].compareTo(b[1]);
+		});
+		return pairs;
+	}
+	
+	private static class Index {
+		final long version;
+		final @NotNull Set<String> entries;
+		final String[] names;
+		final String[] keys; // The names in lower case
+		
+		Index(long version, @NotNull Set<String> entries, String[][] sorted) {
+			this(version, entries, new String[sorted.length], new String[sorted.length]);
+			for (int i = 0; i < sorted.length; i++) {
+				keys[i] = sorted[i][0];
+				names[i] = sorted[i][1];
+			}
+		}
+		
+		Index(long version, @NotNull Set<String> entries, String[] names, String[] keys) {
+			this.version = version;
+			this.entries = entries;
+			this.names = names;
+			this.keys = keys;
+		}
+	}
+	
+}
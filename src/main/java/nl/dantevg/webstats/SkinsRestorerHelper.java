@@ -16,13 +16,18 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 public class SkinsRestorerHelper implements Listener {
 	private final SkinsRestorer skinsRestorer = SkinsRestorerProvider.get();
 	
-	// Map from player UUIDs to skin IDs
-	private final Map<UUID, String> skins = new HashMap<>();
+	// Map from player UUIDs to skin IDs. Filled asynchronously
+	private final Map<UUID, String> skins = new ConcurrentHashMap<>();
+	
+	// Incremented every time a skin ID is added or changed
+	private final AtomicLong version = new AtomicLong();
 	
 	public SkinsRestorerHelper(WebStats plugin) {
 		if (!VersionProvider.isCompatibleWith("15")) {
@@ -35,7 +40,8 @@ public class SkinsRestorerHelper implements Listener {
 		// Cache all skins at startup to prevent lag when loading the webpage for the first time
 		Bukkit.getScheduler().runTaskAsynchronously(
 				WebStats.getPlugin(WebStats.class),
-				() -> Arrays.stream(Bukkit.getOfflinePlayers()).forEach(this::cacheSkin));
+				() -> WebStats.playerRegistry.getUUIDs().forEach(uuid ->
+						cacheSkin(uuid, WebStats.playerRegistry.getName(uuid))));
 		
 		Bukkit.getServer().getPluginManager().registerEvents(this, plugin);
 	}
@@ -46,7 +52,7 @@ public class SkinsRestorerHelper implements Listener {
 		if (!skins.containsKey(player.getUniqueId())) {
 			Bukkit.getScheduler().runTaskAsynchronously(
 					WebStats.getPlugin(WebStats.class),
-					() -> cacheSkin(player));
+					() -> cacheSkin(player.getUniqueId(), player.getName()));
 		}
 	}
 	
@@ -55,15 +61,29 @@ public class SkinsRestorerHelper implements Listener {
 			return skins.get(uuid);
 		} else {
 			String skinID = getSkinIDUncached(uuid, playername);
-			if (skinID != null) skins.put(uuid, skinID);
+			if (skinID != null) putSkin(uuid, skinID);
 			return skinID;
 		}
 	}
 	
-	private void cacheSkin(OfflinePlayer player) {
-		UUID uuid = player.getUniqueId();
-		String skinID = getSkinIDUncached(uuid, player.getName());
-		if (skinID != null) skins.put(uuid, skinID);
+	private void cacheSkin(UUID uuid, String playername) {
+		String skinID = getSkinIDUncached(uuid, playername);
+		if (skinID != null) putSkin(uuid, skinID);
+	}
+	
+	private void putSkin(UUID uuid, String skinID) {
+		if (!skinID.equals(skins.put(uuid, skinID))) version.incrementAndGet();
+	}
+	
+	/**
+	 * Get a number which changes every time a skin ID is added or changed.
+	 * This can be used to find out whether previously retrieved skin IDs are
+	 * still up-to-date.
+	 *
+	 * @return the current skins version
+	 */
+	public long getVersion() {
+		return version.get();
 	}
 	
 	public Map<String, String> getSkinIDsForPlayers(Set<String> names) {
@@ -90,17 +110,14 @@ public class SkinsRestorerHelper implements Listener {
 	}
 	
 	private static @Nullable UUID getUUIDForPlayer(@NotNull String playername) {
-		return Arrays.stream(Bukkit.getOfflinePlayers())
-				.filter(p -> playername.equalsIgnoreCase(p.getName()))
-				.max(Comparator.comparingLong(OfflinePlayer::getLastPlayed))
-				.map(OfflinePlayer::getUniqueId).orElse(null);
+		return WebStats.playerRegistry.getUUID(playername);
 	}
 	
 	protected @NotNull String debug() {
 		List<String> skinIDs = new ArrayList<>();
 		for (Map.Entry<UUID, String> skin : skins.entrySet()) {
 			UUID uuid = skin.getKey();
-			String playername = (uuid != null) ? Bukkit.getOfflinePlayer(uuid).getName() : null;
+			String playername = (uuid != null) ? WebStats.playerRegistry.getName(uuid) : null;
 			skinIDs.add(String.format("%s (%s): %s",
 					uuid, playername, skin.getValue()));
 		}
@@ -0,0 +1,167 @@
+package nl.dantevg.webstats;
+
+import com.google.common.collect.Lists;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-column sorted lists of entries for one (immutable) set of stats. Each
+ * column is sorted the first time it is requested, and then kept for as long
+ * as the stats exist. The same goes for the sorted entries of each table.
+ */
+public class SortIndex {
+	private final @NotNull StatData.Stats stats;
+	
+	// Column name -> entries, sorted in ascending order
+	private final Map<String, List<String>> ascending = new ConcurrentHashMap<>();
+	// Table columns -> entries with a score in the table
+	private final Map<List<String>, Set<String>> inTable = new ConcurrentHashMap<>();
+	// Table columns -> column name -> entries in the table, sorted in ascending order
+	private final Map<List<String>, Map<String, List<String>>> ascendingInTable = new ConcurrentHashMap<>();
+	
+	SortIndex(@NotNull StatData.Stats stats) {
+		this.stats = stats;
+	}
+	
+	/**
+	 * Get all entries, sorted by the scores in a column.
+	 *
+	 * @param column    the column to sort by, or null to sort by entry name
+	 * @param direction the direction to sort in
+	 * @return an unmodifiable list of all entries, in sorted order
+	 */
+	public @NotNull List<String> getSorted(@Nullable String column, @NotNull WebStatsConfig.SortDirection direction) {
+		List<String> sorted;
+		if (column != null && !stats.scores.containsColumn(column)) {
+			// Only keep the columns that exist, the name can come from anywhere
+			sorted = sort(column);
+		} else {
+			String key = (column != null) ? column : "";
+			sorted = ascending.computeIfAbsent(key, k -> sort(column));
+		}
+		return (direction == WebStatsConfig.SortDirection.ASCENDING) ? sorted : Lists.reverse(sorted);
+	}
+	
+	/**
+	 * Get the entries that have a score in any column of a table (like the
+	 * web page shows them), sorted by the scores in a column.
+	 *
+	 * @param column       the column to sort by, or null to sort by entry name
+	 * @param direction    the direction to sort in
+	 * @param tableColumns the columns of the table
+	 * @return an unmodifiable list of the entries in the table, in sorted order
+	 */
+	public @NotNull List<String> getSortedInTable(@Nullable String column, @NotNull WebStatsConfig.SortDirection direction,
+	                                              @NotNull List<String> tableColumns) {
+		List<String> sorted;
+		if (column != null && !stats.scores.containsColumn(column)) {
+			sorted = filter(getSorted(column, WebStatsConfig.SortDirection.ASCENDING), tableColumns);
+		} else {
+			String key = (column != null) ? column : "";
+			sorted = ascendingInTable.computeIfAbsent(tableColumns, t -> new ConcurrentHashMap<>())
+					.computeIfAbsent(key, k -> filter(getSorted(column, WebStatsConfig.SortDirection.ASCENDING), tableColumns));
+		}
+		return (direction == WebStatsConfig.SortDirection.ASCENDING) ? sorted : Lists.reverse(sorted);
+	}
+	
+	private @NotNull List<String> filter(@NotNull List<String> sorted, @NotNull List<String> tableColumns) {
+		Set<String> entries = inTable.computeIfAbsent(tableColumns, this::getEntriesWithScores);
+		List<String> filtered = new ArrayList<>(entries.size());
+		for (String entry : sorted) {
+			if (entries.contains(entry)) filtered.add(entry);
+		}
+		return Collections.unmodifiableList(filtered);
+	}
+	
+	// The entries with a score that is not empty or 0 in any of the columns
+	private @NotNull Set<String> getEntriesWithScores(@NotNull List<String> columns) {
+		Set<String> entries = new HashSet<>();
+		for (String column : columns) {
+			if (!stats.scores.containsColumn(column)) continue;
+			for (String entry : stats.scores.entriesIn(column)) {
+				String score = stats.scores.get(entry, column);
+				if (score != null && !score.isEmpty() && !score.equals("0")) entries.add(entry);
+			}
+		}
+		return entries;
+	}
+	
+	private @NotNull List<String> sort(@Nullable String column) {
+		String[] entries = stats.entries.toArray(new String[0]);
+		int n = entries.length;
+		
+		// Parse the numbers once, instead of in every comparison
+		Map<String, String> scores = (column != null) ? stats.scores.column(column) : null;
+		boolean numeric = column != null && stats.scores.isNumeric(column);
+		String[] values = new String[n];
+		double[] numbers = new double[n];
+		boolean[] isNumber = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			if (numeric) {
+				// Already stored as numbers, no need to convert to a string
+				isNumber[i] = stats.scores.contains(entries[i], column);
+				numbers[i] = stats.scores.getNumber(entries[i], column);
+				values[i] = isNumber[i] ? "" : null;
+				continue;
+			}
+			values[i] = (scores != null) ? scores.get(entries[i]) : entries[i];
+			if (values[i] == null) continue;
+			try {
+				numbers[i] = Double.parseDouble(values[i]);
+				isNumber[i] = true;
+			} catch (NumberFormatException e) {
+				// Not a number, compare as string
+			}
+		}
+		
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) order[i] = i;
+		Arrays.sort(order, (a, b) -> {
+			int result;
+			if (values[a] == null || values[b] == null) {
+				result = compare(values[a], values[b]);
+			} else if (isNumber[a] && isNumber[b]) {
+				result = Double.compare(numbers[a], numbers[b]);
+			} else {
+				result = values[a].compareToIgnoreCase(values[b]);
+			}
+			// Keep the order of equal scores stable between requests
+			return (result != 0) ? result : entries[a].compareTo(entries[b]);
+		});
+		
+		List<String> sorted = new ArrayList<>(n);
+		for (int i : order) sorted.add(entries[i]);
+		return Collections.unmodifiableList(sorted);
+	}
+	
+	/**
+	 * Compare two scores in ascending order. Missing scores come first,
+	 * numbers are compared as numbers and other scores as case-insensitive
+	 * strings.
+	 *
+	 * @param a the first score
+	 * @param b the second score
+	 * @return a negative number, zero or a positive number when a is
+	 * respectively smaller than, equal to or greater than b
+	 */
+	public static int compare(@Nullable String a, @Nullable String b) {
+		// Handle null (because Double.parseDouble cannot handle null)
+		if (a == null && b == null) return 0;
+		else if (a == null) return -1;
+		else if (b == null) return 1;
+		
+		try {
+			// Try to convert a and b to numbers
+			double aNum = Double.parseDouble(a);
+			double bNum = Double.parseDouble(b);
+			return Double.compare(aNum, bNum);
+		} catch (NumberFormatException e) {
+			// a or b were not numbers, compare as strings
+			return a.compareToIgnoreCase(b);
+		}
+	}
+	
+}
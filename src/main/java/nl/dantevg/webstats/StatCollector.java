@@ -0,0 +1,338 @@
+package nl.dantevg.webstats;
+
+import nl.dantevg.webstats.metrics.Histogram;
+import nl.dantevg.webstats.metrics.Metrics;
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Collects the stats from all sources on a fixed schedule and publishes them
+ * as an immutable snapshot. The web server, the exporter and the Discord
+ * webhook all read the latest snapshot instead of collecting the stats
+ * themselves, so the amount of main-thread work does not depend on how often
+ * the stats are requested.
+ */
+public class StatCollector implements Runnable {
+	// Number of previous snapshots to keep, to compute deltas from
+	private static final int HISTORY_SIZE = 8;
+	
+	private final @NotNull WebStats plugin;
+	
+	private volatile @Nullable Snapshot snapshot;
+	private final Deque<Snapshot> history = new ArrayDeque<>(HISTORY_SIZE);
+	private final List<Consumer<Snapshot>> listeners = new CopyOnWriteArrayList<>();
+	private final Leaderboards leaderboards = new Leaderboards();
+	private final SearchIndex searchIndex = new SearchIndex();
+	
+	private final long periodTicks;
+	private long ticksUntilCollect = 0;
+	
+	// Collection tasks of the current collection pass, or null if none is in
+	// progress. The tasks are done a few steps each tick, to limit lag.
+	private @Nullable List<CollectionTask> tasks;
+	private @Nullable List<String> taskNames;
+	private int taskIndex;
+	private long taskNanos; // Time spent on the current task so far
+	// The results of the last collection pass being merged off the main
+	// thread, or null if none are. The next pass only starts once they are
+	// published, as the sources may change their results in the next pass.
+	private @Nullable CompletableFuture<Merged> merging;
+	
+	public StatCollector(@NotNull WebStats plugin) {
+		this.plugin = plugin;
+		this.periodTicks = Math.max(1, (long) WebStatsConfig.getInstance().collectInterval * 20); // assume 20 tps
+		
+		// Run every tick, to continue a collection pass in progress
+		Bukkit.getScheduler().runTaskTimer(plugin, this, 0, 1);
+	}
+	
+	@Override
+	public void run() {
+		if (merging != null) {
+			if (merging.isDone()) publishMerged();
+			return;
+		}
+		if (tasks == null) {
+			if (--ticksUntilCollect > 0) return;
+			ticksUntilCollect = periodTicks;
+			Map<String, CollectionTask> sources = Stats.collect();
+			tasks = new ArrayList<>(sources.values());
+			taskNames = new ArrayList<>(sources.keySet());
+			taskIndex = 0;
+			taskNanos = 0;
+		}
+		
+		// A budget of 0 means no limit, collect everything in this tick
+		long budget = TimeUnit.MILLISECONDS.toNanos(WebStatsConfig.getInstance().collectTickBudget);
+		long start = System.nanoTime();
+		long now = start;
+		while (taskIndex < tasks.size()) {
+			boolean done = tasks.get(taskIndex).step();
+			long stepEnd = System.nanoTime();
+			taskNanos += stepEnd - now;
+			now = stepEnd;
+			if (done) {
+				Metrics.COLLECTION_SECONDS.observe(taskNanos, taskNames.get(taskIndex));
+				taskIndex++;
+				taskNanos = 0;
+			}
+			if (budget > 0 && now - start >= budget) break;
+			// Don't hold up the tick while waiting for other threads
+			if (!done && tasks.get(taskIndex).isWaiting()) break;
+		}
+		Metrics.COLLECTION_TICK_SECONDS.observe(now - start);
+		if (taskIndex < tasks.size()) return;
+		
+		// All tasks done. Merging all scores and comparing them to the
+		// previous snapshot takes long with many entries, so that is done on
+		// another thread and the stats are published once it is finished.
+		List<EntriesScores> results = new ArrayList<>();
+		for (CollectionTask task : tasks) results.add(task.getResult());
+		tasks = null;
+		merging = merge(results, snapshot, Stats.getDefaultColumns());
+	}
+	
+	private @NotNull CompletableFuture<Merged> merge(@NotNull List<EntriesScores> results, @Nullable Snapshot previous,
+	                                                 @Nullable List<String> defaultColumns) {
+		CompletableFuture<Merged> merged = new CompletableFuture<>();
+		Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+			try {
+				EntriesScores entriesScores = new EntriesScores();
+				for (EntriesScores result : results) entriesScores.add(result);
+				StatData.Stats stats = Stats.toStats(entriesScores, defaultColumns);
+				ScoreChanges changes = (previous != null)
+						? ScoreChanges.between(previous.stats.scores, stats.scores) : null;
+				boolean statsChanged = (previous == null) || !stats.contentEquals(previous.stats, changes);
+				merged.complete(new Merged(stats, previous, changes, statsChanged));
+			} catch (RuntimeException e) {
+				merged.completeExceptionally(e);
+			}
+		});
+		return merged;
+	}
+	
+	// Publish the merged stats, waiting for the merge if it is not done yet
+	private void publishMerged() {
+		try {
+			Merged merged = merging.join();
+			// The changes are only valid if no other snapshot was published
+			if (merged.previous == snapshot) {
+				publishIfChanged(merged.stats, merged.changes, merged.statsChanged);
+			} else {
+				publishIfChanged(merged.stats);
+			}
+		} catch (CompletionException e) {
+			WebStats.logger.log(Level.WARNING, "Could not merge the collected stats", e.getCause());
+		} finally {
+			merging = null;
+		}
+	}
+	
+	/**
+	 * Collect the stats from all sources at once and publish them as a new
+	 * snapshot. If nothing changed since the previous snapshot, that one is
+	 * kept. Must be called on the main thread.
+	 *
+	 * @return the latest snapshot
+	 */
+	public @NotNull Snapshot collect() {
+		// The sources must not collect again while their previous results
+		// are being merged
+		if (merging != null) {
+			publishMerged();
+			if (snapshot != null) return snapshot;
+		}
+		return publishIfChanged(Stats.getStats());
+	}
+	
+	private @NotNull Snapshot publishIfChanged(@NotNull StatData.Stats stats) {
+		Snapshot previous = snapshot;
+		ScoreChanges changes = (previous != null) ? ScoreChanges.between(previous.stats.scores, stats.scores) : null;
+		boolean statsChanged = (previous == null) || !stats.contentEquals(previous.stats, changes);
+		return publishIfChanged(stats, changes, statsChanged);
+	}
+	
+	/**
+	 * @param stats        the new stats
+	 * @param changes      the changes since the stats of the latest snapshot,
+	 *                     or null if there is none
+	 * @param statsChanged whether the stats differ from the latest snapshot
+	 * @return the latest snapshot
+	 */
+	private @NotNull Snapshot publishIfChanged(@NotNull StatData.Stats stats, @Nullable ScoreChanges changes,
+	                                           boolean statsChanged) {
+		Map<String, Object> online = Collections.unmodifiableMap(Stats.getOnline());
+		
+		Snapshot previous = snapshot;
+		if (previous == null) {
+			publish(new Snapshot(1, stats, online, null));
+		} else {
+			boolean onlineChanged = !previous.online.equals(online);
+			if (statsChanged || onlineChanged) {
+				// Keep the previous objects when they did not change, so that
+				// consumers can tell what changed by comparing references
+				publish(new Snapshot(previous.version + 1,
+						statsChanged ? stats : previous.stats,
+						onlineChanged ? online : previous.online,
+						statsChanged ? changes : null));
+			}
+		}
+		return snapshot;
+	}
+	
+	private void publish(@NotNull Snapshot newSnapshot) {
+		synchronized (history) {
+			if (history.size() >= HISTORY_SIZE) history.removeFirst();
+			history.addLast(newSnapshot);
+		}
+		snapshot = newSnapshot;
+		for (Consumer<Snapshot> listener : listeners) listener.accept(newSnapshot);
+	}
+	
+	/**
+	 * Register a listener which gets called on the main thread every time a
+	 * new snapshot is published. Listeners should return quickly.
+	 *
+	 * @param listener the listener to add
+	 */
+	public void addListener(@NotNull Consumer<Snapshot> listener) {
+		listeners.add(listener);
+	}
+	
+	public void removeListener(@NotNull Consumer<Snapshot> listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Get the latest snapshot, or null if no snapshot has been collected yet.
+	 *
+	 * @return the latest snapshot
+	 */
+	public @Nullable Snapshot getLatest() {
+		return snapshot;
+	}
+	
+	/**
+	 * Get a recent snapshot by its version.
+	 *
+	 * @param version the version of the snapshot
+	 * @return the snapshot, or null if it is too old or does not exist
+	 */
+	public @Nullable Snapshot getSnapshot(long version) {
+		synchronized (history) {
+			for (Snapshot s : history) {
+				if (s.version == version) return s;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Get the latest snapshot, collecting one right away if there is none
+	 * yet. Must be called on the main thread.
+	 *
+	 * @return the latest snapshot
+	 */
+	public @NotNull Snapshot getSnapshot() {
+		Snapshot current = snapshot;
+		return (current != null) ? current : collect();
+	}
+	
+	/**
+	 * Get the latest snapshot. If there is none yet, wait for the main thread
+	 * to collect one. Must not be called on the main thread.
+	 *
+	 * @return the latest snapshot
+	 * @throws InterruptedException when interrupted while waiting
+	 */
+	public @NotNull Snapshot awaitSnapshot() throws InterruptedException {
+		Snapshot current = snapshot;
+		if (current != null) return current;
+		
+		try (Histogram.Timer ignored = Metrics.MAIN_THREAD_WAIT_SECONDS.time()) {
+			// Stats need to be gathered on the main thread,
+			// see https://github.com/Dantevg/WebStats/issues/52
+			return Bukkit.getScheduler().callSyncMethod(plugin, this::getSnapshot).get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	public @NotNull Leaderboards getLeaderboards() {
+		return leaderboards;
+	}
+	
+	public @NotNull SearchIndex getSearchIndex() {
+		return searchIndex;
+	}
+	
+	public @NotNull String debug() {
+		Snapshot current = snapshot;
+		if (current == null) return "Stats snapshot: none collected yet";
+		List<CollectionTask> currentTasks = tasks;
+		return "Stats snapshot: version " + current.version + ", collected at " + current.timestamp
+				+ ", " + current.stats.entries.size() + " entries"
+				+ ((currentTasks != null) ? ", collecting (" + taskIndex + "/" + currentTasks.size() + " sources done)" : "")
+				+ ((merging != null) ? ", merging" : "")
+				+ "\n" + leaderboards.debug()
+				+ "\n" + searchIndex.debug();
+	}
+	
+	// The merged results of a collection pass, compared to the previous snapshot
+	private static class Merged {
+		final @NotNull StatData.Stats stats;
+		final @Nullable Snapshot previous;
+		// The changes since the previous snapshot, null if there is none
+		final @Nullable ScoreChanges changes;
+		final boolean statsChanged;
+		
+		Merged(@NotNull StatData.Stats stats, @Nullable Snapshot previous, @Nullable ScoreChanges changes,
+		       boolean statsChanged) {
+			this.stats = stats;
+			this.previous = previous;
+			this.changes = changes;
+			this.statsChanged = statsChanged;
+		}
+	}
+	
+	/**
+	 * An immutable, versioned view of all stats at one point in time.
+	 * The version increases by one every time the stats or the online
+	 * players change.
+	 */
+	public static class Snapshot {
+		public final long version;
+		public final @NotNull StatData.Stats stats;
+		public final @NotNull Map<String, Object> online;
+		public final @NotNull Instant timestamp = Instant.now();
+		// The skins version when this snapshot was published, skins that
+		// changed after that have a higher version
+		public final long skinsVersion = (WebStats.skinsRestorerHelper != null)
+				? WebStats.skinsRestorerHelper.getVersion() : -1;
+		// The scores that changed since the stats of the previous snapshot,
+		// null if this snapshot has the same stats or is the first one
+		public final @Nullable ScoreChanges changes;
+		
+		private Snapshot(long version, @NotNull StatData.Stats stats, @NotNull Map<String, Object> online,
+		                 @Nullable ScoreChanges changes) {
+			this.version = version;
+			this.stats = stats;
+			this.online = online;
+			this.changes = changes;
+			WebStats.logger.log(Level.CONFIG, "Published stats snapshot version " + version);
+		}
+		
+	}
+	
+}
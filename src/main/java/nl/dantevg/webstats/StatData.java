@@ -1,22 +1,24 @@
 package nl.dantevg.webstats;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.Table;
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import org.bukkit.Bukkit;
 import org.jetbrains.annotations.NotNull;
 
-import java.lang.reflect.Type;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.io.IOException;
+import java.util.*;
 
 public class StatData {
+	private static final int MESSAGE_PACK_INITIAL_SIZE = 8192;
+	
+	public long version;
 	public Map<String, Object> online;
 	@SerializedName("scoreboard")
 	public Stats stats;
@@ -24,42 +26,127 @@ public class StatData {
 	public Map<String, Object> units = WebStatsConfig.getInstance().columnUnits;
 	public Map<String, String> skins;
 	
-	public StatData(Map<String, Object> online, Stats stats, Set<String> playernames, Map<String, String> skins) {
+	public StatData(long version, Map<String, Object> online, Stats stats, Set<String> playernames, Map<String, String> skins) {
+		this.version = version;
 		this.online = online;
 		this.stats = stats;
 		this.playernames = playernames;
 		this.skins = skins;
 	}
 	
+	/**
+	 * Serialize to MessagePack, for /stats.msgpack. This has the same fields
+	 * as the JSON, except for the scores (see {@link Stats#writeMessagePack}).
+	 * Null fields are left out, like in the JSON.
+	 */
+	public byte[] toMessagePack() throws IOException {
+		MessagePackWriter out = new MessagePackWriter(MESSAGE_PACK_INITIAL_SIZE);
+		int size = 1;
+		for (Object field : Arrays.asList(online, stats, playernames, units, skins)) {
+			if (field != null) size++;
+		}
+		
+		out.writeMapHeader(size);
+		out.write("version").write(version);
+		if (online != null) out.write("online").writeValue(online);
+		if (stats != null) stats.writeMessagePack(out.write("scoreboard"));
+		if (playernames != null) out.write("playernames").writeValue(playernames);
+		if (units != null) out.write("units").writeValue(units);
+		if (skins != null) out.write("skins").writeValue(skins);
+		return out.toByteArray();
+	}
+	
 	@Override
 	public String toString() {
 		return new Gson().toJson(this);
 	}
 	
+	// Immutable, so that it can be shared between threads once collected
 	public static class Stats {
-		public Set<String> entries;
+		public final Set<String> entries;
 		@Deprecated()
-		public List<String> columns; // For backwards compatibility with older web front-ends
+		public final List<String> columns; // For backwards compatibility with older web front-ends
 		@JsonAdapter(TableAdapter.class)
-		public Table<String, String, String> scores; // Row = player, column = column / objective
+		public final ScoreTable scores; // Row = player, column = column / objective
+		
+		private final transient SortIndex sortIndex = new SortIndex(this);
+		private final transient Supplier<PlayerIndex> playerIndex = Suppliers.memoize(() -> new PlayerIndex(this));
 		
 		public Stats(@NotNull EntriesScores entriesScores, List<String> columns) {
-			this.entries = entriesScores.entries;
-			this.scores = entriesScores.scores;
-			this.columns = columns;
+			this.entries = Collections.unmodifiableSet(entriesScores.entries);
+			this.scores = entriesScores.toScoreTable();
+			this.columns = (columns != null) ? Collections.unmodifiableList(columns) : null;
 		}
 		
 		public Stats(@NotNull EntriesScores entriesScores) {
-			entries = entriesScores.entries;
-			scores = entriesScores.scores;
+			this(entriesScores, null);
+		}
+		
+		public @NotNull SortIndex getSortIndex() {
+			return sortIndex;
 		}
 		
-		// This is necessary because Gson does not serialize Guava Tables correctly,
-		// convert Table to Map-in-Map first
-		private static class TableAdapter implements JsonSerializer<Table<?, ?, ?>> {
+		/**
+		 * Get the index of these stats by player, which is built on first use.
+		 * Player UUIDs come from the player registry, but the first call sorts
+		 * and ranks every column, so avoid calling it on the main thread.
+		 */
+		public @NotNull PlayerIndex getPlayerIndex() {
+			return playerIndex.get();
+		}
+		
+		/**
+		 * Write these stats in MessagePack. Instead of a map of entries to
+		 * scores per column, the column names are in {@code scoreColumns} and
+		 * {@code scores} has an array of scores per column, in the order of
+		 * {@code entries}.
+		 *
+		 * @param out the writer to write to
+		 * @throws IOException
+		 */
+		public void writeMessagePack(@NotNull MessagePackWriter out) throws IOException {
+			out.writeMapHeader((columns != null) ? 4 : 3);
+			out.write("entries").writeValue(entries);
+			if (columns != null) out.write("columns").writeValue(columns);
+			out.write("scoreColumns").writeValue(scores.columnKeySet());
+			scores.writeMessagePack(out.write("scores"), entries);
+		}
+		
+		/**
+		 * Check whether these stats contain exactly the same entries, columns
+		 * and scores as the other stats.
+		 *
+		 * @param that    the stats to compare with
+		 * @param changes the changes from the scores of the other stats to
+		 *                these scores
+		 * @return whether both stats have the same contents
+		 */
+		public boolean contentEquals(@NotNull Stats that, @NotNull ScoreChanges changes) {
+			return changes.isEmpty()
+					&& entries.equals(that.entries)
+					&& Objects.equals(columns, that.columns);
+		}
+		
+		// This is necessary because Gson does not serialize Guava Tables correctly.
+		// Writes the Table as Map-in-Map (column -> entry -> score) directly,
+		// without building a JSON tree of all scores first
+		private static class TableAdapter extends TypeAdapter<Table<String, String, String>> {
+			@Override
+			public void write(JsonWriter out, Table<String, String, String> table) throws IOException {
+				out.beginObject();
+				for (String column : table.columnKeySet()) {
+					out.name(column).beginObject();
+					for (Map.Entry<String, String> score : table.column(column).entrySet()) {
+						out.name(score.getKey()).value(score.getValue());
+					}
+					out.endObject();
+				}
+				out.endObject();
+			}
+			
 			@Override
-			public JsonElement serialize(Table<?, ?, ?> table, Type type, JsonSerializationContext context) {
-				return context.serialize(table.columnMap());
+			public Table<String, String, String> read(JsonReader in) {
+				throw new UnsupportedOperationException("Stats are only serialized");
 			}
 		}
 		
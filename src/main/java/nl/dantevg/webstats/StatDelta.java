@@ -0,0 +1,106 @@
+package nl.dantevg.webstats;
+
+import com.google.common.collect.Sets;
+import com.google.gson.Gson;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * The changes between two stats snapshots. Applying these changes to the
+ * older snapshot results in the newer one. Fields without any changes are
+ * left null, so they do not get serialized.
+ */
+public class StatDelta {
+	public final long since;
+	public final long version;
+	
+	public Set<String> addedEntries;
+	public Set<String> removedEntries;
+	@Deprecated
+	public List<String> columns; // Only present when changed
+	// Column -> entry -> new score, for added and changed scores
+	public Map<String, Map<String, String>> scores;
+	// Column -> entries of which the score was removed
+	public Map<String, Set<String>> removedScores;
+	
+	// Player -> new status, for players that came online or changed status
+	public Map<String, Object> online;
+	// Players that are no longer online
+	public Set<String> offline;
+	
+	// Set per client, like in StatData. The skins are only present when
+	// they may have changed.
+	public Set<String> playernames;
+	public Map<String, String> skins;
+	
+	private StatDelta(long since, long version) {
+		this.since = since;
+		this.version = version;
+	}
+	
+	/**
+	 * Compute the changes from one snapshot to another.
+	 *
+	 * @param from the older snapshot
+	 * @param to   the newer snapshot
+	 * @return the changes between the snapshots
+	 */
+	public static @NotNull StatDelta between(@NotNull StatCollector.Snapshot from, @NotNull StatCollector.Snapshot to) {
+		StatDelta delta = new StatDelta(from.version, to.version);
+		
+		// Snapshots share the stats object when the stats did not change
+		if (from.stats != to.stats) delta.diffStats(from.stats, to.stats, to.changes);
+		if (from.online != to.online) delta.diffOnline(from.online, to.online);
+		
+		return delta;
+	}
+	
+	private void diffStats(@NotNull StatData.Stats from, @NotNull StatData.Stats to, @Nullable ScoreChanges changes) {
+		addedEntries = nullIfEmpty(new HashSet<>(Sets.difference(to.entries, from.entries)));
+		removedEntries = nullIfEmpty(new HashSet<>(Sets.difference(from.entries, to.entries)));
+		if (!Objects.equals(from.columns, to.columns)) columns = to.columns;
+		
+		// The newer snapshot already knows what changed when it directly
+		// follows the older one. Only the changed scores are converted to
+		// strings, most scores do not change
+		if (changes == null || changes.from != from.scores) changes = ScoreChanges.between(from.scores, to.scores);
+		Map<String, Map<String, String>> changedScores = new HashMap<>();
+		for (String column : changes.getChangedColumns()) {
+			Map<String, String> columnScores = new HashMap<>();
+			for (String entry : changes.getChanged(column)) columnScores.put(entry, to.scores.get(entry, column));
+			changedScores.put(column, columnScores);
+		}
+		scores = nullIfEmpty(changedScores);
+		
+		Map<String, Set<String>> removed = new HashMap<>();
+		for (String column : changes.getRemovedColumns()) {
+			removed.put(column, new HashSet<>(changes.getRemoved(column)));
+		}
+		removedScores = nullIfEmpty(removed);
+	}
+	
+	private void diffOnline(@NotNull Map<String, Object> from, @NotNull Map<String, Object> to) {
+		Map<String, Object> changed = new HashMap<>();
+		to.forEach((player, status) -> {
+			if (!status.equals(from.get(player))) changed.put(player, status);
+		});
+		online = nullIfEmpty(changed);
+		offline = nullIfEmpty(new HashSet<>(Sets.difference(from.keySet(), to.keySet())));
+	}
+	
+	private static <T extends Collection<?>> T nullIfEmpty(T collection) {
+		return collection.isEmpty() ? null : collection;
+	}
+	
+	private static <T extends Map<?, ?>> T nullIfEmpty(T map) {
+		return map.isEmpty() ? null : map;
+	}
+	
+	@Override
+	public String toString() {
+		return new Gson().toJson(this);
+	}
+	
+}
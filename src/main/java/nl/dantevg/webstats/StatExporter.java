@@ -43,9 +43,10 @@ public class StatExporter implements Runnable {
 	}
 	
 	public boolean export() {
+		StatData.Stats stats = WebStats.statCollector.getSnapshot().stats;
 		boolean success = (WebStatsConfig.getInstance().exportCumulative)
-				? storage.append(filterChanged(Stats.getStats()))
-				: storage.storeKeepColumns(Stats.getStats().scores);
+				? storage.append(filterChanged(stats))
+				: storage.storeKeepColumns(stats.scores);
 		if (success) WebStats.logger.log(Level.INFO, "Export finished");
 		else WebStats.logger.log(Level.INFO, "Could not export stats");
 		return success;
@@ -62,16 +63,32 @@ public class StatExporter implements Runnable {
 		StorageMethod.Result lastExportStats = storage.load();
 		if (lastExportStats == null) return stats.scores;
 		
-		Set<String> columns = stats.scores.columnKeySet();
+		List<String> storedColumns = null;
 		try {
-			List<String> storedColumns = storage.readColumns();
-			// Only keep columns that are actually stored.
-			// Do not just use storedColumns to check, because that also
-			// contains "timestamp" and "date", which change every time.
-			if (storedColumns != null) columns.retainAll(storedColumns);
+			storedColumns = storage.readColumns();
 		} catch (IOException e) {
 			// Ignore
 		}
+		return filterChanged(stats, lastExportStats, storedColumns);
+	}
+	
+	/**
+	 * Filter to keep only entries that have at least one column changed
+	 * compared to the stored stats.
+	 *
+	 * @param stats           the stats to filter
+	 * @param lastExportStats the stats of the last export
+	 * @param storedColumns   the columns in the stored stats, or null if unknown
+	 * @return a new table with all entries without any changes removed
+	 */
+	static Table<String, String, String> filterChanged(StatData.Stats stats,
+	                                                   StorageMethod.Result lastExportStats,
+	                                                   List<String> storedColumns) {
+		Set<String> columns = new HashSet<>(stats.scores.columnKeySet());
+		// Only keep columns that are actually stored.
+		// Do not just use storedColumns to check, because that also
+		// contains "timestamp" and "date", which change every time.
+		if (storedColumns != null) columns.retainAll(storedColumns);
 		
 		Table<String, String, String> filteredStats = HashBasedTable.create(stats.scores);
 		
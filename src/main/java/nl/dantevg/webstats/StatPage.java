@@ -0,0 +1,91 @@
+package nl.dantevg.webstats;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import com.google.gson.annotations.SerializedName;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * One page of a sorted table, so that clients do not need to download (and
+ * sort) the complete stats to show a single page. The entries in the
+ * scoreboard are in sorted order, and only contain the columns of the table.
+ */
+public class StatPage {
+	public final long version;
+	public final String sortColumn;
+	public final WebStatsConfig.SortDirection sortDirection;
+	public final int page;
+	public final int size;
+	public final int total; // Total number of rows in the table, over all pages
+	public final Map<String, Object> online;
+	@SerializedName("scoreboard")
+	public final StatData.Stats stats;
+	public final Map<String, Object> units = WebStatsConfig.getInstance().columnUnits;
+	public final Map<String, String> skins;
+	
+	private StatPage(long version, String sortColumn, WebStatsConfig.SortDirection sortDirection,
+	                 int page, int size, int total, Map<String, Object> online,
+	                 StatData.Stats stats, Map<String, String> skins) {
+		this.version = version;
+		this.sortColumn = sortColumn;
+		this.sortDirection = sortDirection;
+		this.page = page;
+		this.size = size;
+		this.total = total;
+		this.online = online;
+		this.stats = stats;
+		this.skins = skins;
+	}
+	
+	/**
+	 * Get one page of a table.
+	 *
+	 * @param snapshot      the snapshot to take the stats from
+	 * @param columns       the columns in the table, or null for all columns
+	 * @param sortColumn    the column to sort by, or "Player" to sort by name
+	 * @param sortDirection the direction to sort in
+	 * @param page          the page number, starting at 1
+	 * @param size          the number of rows per page
+	 * @return the requested page, which is empty if the page number is too high
+	 */
+	public static @NotNull StatPage of(@NotNull StatCollector.Snapshot snapshot, @Nullable List<String> columns,
+	                                   @NotNull String sortColumn, @NotNull WebStatsConfig.SortDirection sortDirection,
+	                                   int page, int size) {
+		StatData.Stats all = snapshot.stats;
+		List<String> tableColumns = (columns != null) ? columns : new ArrayList<>(all.scores.columnKeySet());
+		
+		// Only the entries that have scores in this table (like the web page
+		// shows), which is kept per table and column for the whole snapshot
+		List<String> sorted = all.getSortIndex().getSortedInTable(
+				sortColumn.equals("Player") ? null : sortColumn, sortDirection, tableColumns);
+		
+		int total = sorted.size();
+		int first = (int) Math.min((long) (page - 1) * size, total);
+		Set<String> entries = new LinkedHashSet<>(sorted.subList(first, (int) Math.min((long) first + size, total)));
+		Table<String, String, String> scores = HashBasedTable.create();
+		for (String entry : entries) {
+			for (String column : tableColumns) {
+				String score = all.scores.get(entry, column);
+				if (score != null) scores.put(entry, column, score);
+			}
+		}
+		
+		Map<String, Object> online = new HashMap<>();
+		for (String entry : entries) {
+			Object status = snapshot.online.get(entry);
+			if (status != null) online.put(entry, status);
+		}
+		
+		Map<String, String> skins = (WebStats.skinsRestorerHelper != null)
+				? WebStats.skinsRestorerHelper.getSkinIDsForPlayers(entries)
+				: null;
+		
+		StatData.Stats stats = new StatData.Stats(new EntriesScores(entries, scores), tableColumns);
+		return new StatPage(snapshot.version, sortColumn, sortDirection, page, size, total,
+				online, stats, skins);
+	}
+	
+}
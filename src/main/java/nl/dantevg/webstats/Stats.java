@@ -1,5 +1,7 @@
 package nl.dantevg.webstats;
 
+import nl.dantevg.webstats.metrics.Histogram;
+import nl.dantevg.webstats.metrics.Metrics;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
@@ -7,7 +9,6 @@ import org.jetbrains.annotations.Nullable;
 
 import java.net.InetAddress;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
 
 public class Stats {
 	public static @NotNull Map<String, Object> getOnline() {
@@ -23,14 +24,55 @@ public class Stats {
 	public static @NotNull StatData.Stats getStats() {
 		EntriesScores entriesScores = new EntriesScores();
 		
-		if (WebStats.scoreboardSource != null) entriesScores.add(WebStats.scoreboardSource.getStats());
-		if (WebStats.databaseSource != null) entriesScores.add(WebStats.databaseSource.getStats());
-		if (WebStats.placeholderSource != null) entriesScores.add(WebStats.placeholderSource.getStats());
+		if (WebStats.scoreboardSource != null) {
+			try (Histogram.Timer ignored = Metrics.COLLECTION_SECONDS.time("scoreboard")) {
+				entriesScores.add(WebStats.scoreboardSource.getStats());
+			}
+		}
+		if (WebStats.databaseSource != null) {
+			try (Histogram.Timer ignored = Metrics.COLLECTION_SECONDS.time("database")) {
+				entriesScores.add(WebStats.databaseSource.getStats());
+			}
+		}
+		if (WebStats.placeholderSource != null) {
+			try (Histogram.Timer ignored = Metrics.COLLECTION_SECONDS.time("placeholder")) {
+				entriesScores.add(WebStats.placeholderSource.getStats());
+			}
+		}
 		
+		return toStats(entriesScores);
+	}
+	
+	/**
+	 * Get the collection tasks of all sources, in the same order as
+	 * {@link #getStats()} collects them.
+	 *
+	 * @return the collection tasks, by source name
+	 */
+	static @NotNull Map<String, CollectionTask> collect() {
+		Map<String, CollectionTask> tasks = new LinkedHashMap<>();
+		if (WebStats.scoreboardSource != null) tasks.put("scoreboard", WebStats.scoreboardSource.collect());
+		if (WebStats.databaseSource != null) tasks.put("database", WebStats.databaseSource.collect());
+		if (WebStats.placeholderSource != null) tasks.put("placeholder", WebStats.placeholderSource.collect());
+		return tasks;
+	}
+	
+	static @NotNull StatData.Stats toStats(@NotNull EntriesScores entriesScores) {
+		// For backwards-compatibility with older web front-ends
+		return toStats(entriesScores, getDefaultColumns());
+	}
+	
+	/**
+	 * Merge the scores of all sources into stats. Does not read the config
+	 * file, so it can be called off the main thread.
+	 *
+	 * @param entriesScores  the scores of all sources
+	 * @param defaultColumns the columns from {@link #getDefaultColumns()}
+	 * @return the stats
+	 */
+	static @NotNull StatData.Stats toStats(@NotNull EntriesScores entriesScores, @Nullable List<String> defaultColumns) {
 		if (!WebStatsConfig.getInstance().serverColumns.isEmpty()) entriesScores.entries.add("#server");
 		
-		// For backwards-compatibility with older web front-ends
-		List<String> defaultColumns = getDefaultColumns();
 		if (defaultColumns != null) {
 			return new StatData.Stats(entriesScores, defaultColumns);
 		} else {
@@ -39,23 +81,21 @@ public class Stats {
 	}
 	
 	public static @NotNull StatData getAll(@NotNull InetAddress ip) throws InterruptedException {
-		try {
-			// Stats need to be gathered on the main thread,
-			// see https://github.com/Dantevg/WebStats/issues/52
-			StatData.Stats stats = Bukkit.getScheduler().callSyncMethod(
-					WebStats.getPlugin(WebStats.class),
-					Stats::getStats).get();
-			Set<String> playernames = WebStats.playerIPStorage.getNames(ip);
-			Map<String, String> skins = (WebStats.skinsRestorerHelper != null)
-					? WebStats.skinsRestorerHelper.getSkinIDsForPlayers(stats.entries)
-					: null;
-			return new StatData(getOnline(), stats, playernames, skins);
-		} catch (ExecutionException e) {
-			throw new RuntimeException(e);
-		}
+		return getAll(WebStats.statCollector.awaitSnapshot(), getPlayernames(ip));
+	}
+	
+	public static @NotNull StatData getAll(@NotNull StatCollector.Snapshot snapshot, @NotNull Set<String> playernames) {
+		Map<String, String> skins = (WebStats.skinsRestorerHelper != null)
+				? WebStats.skinsRestorerHelper.getSkinIDsForPlayers(snapshot.stats.entries)
+				: null;
+		return new StatData(snapshot.version, snapshot.online, snapshot.stats, playernames, skins);
+	}
+	
+	public static @NotNull Set<String> getPlayernames(@NotNull InetAddress ip) {
+		return WebStats.playerIPStorage.getNames(ip);
 	}
 	
-	private static @Nullable List<String> getDefaultColumns() {
+	static @Nullable List<String> getDefaultColumns() {
 		WebStatsConfig webStatsConfig = WebStatsConfig.getInstance();
 		// Need to check for `columns` before `tables`, because `tables` will
 		// always be present in the default (in-jar) config.
@@ -6,6 +6,7 @@ import nl.dantevg.webstats.placeholder.PlaceholderSource;
 import nl.dantevg.webstats.scoreboard.ScoreboardSource;
 import nl.dantevg.webstats.webserver.HTTPSWebServer;
 import nl.dantevg.webstats.webserver.HTTPWebServer;
+import nl.dantevg.webstats.webserver.NIOWebServer;
 import nl.dantevg.webstats.webserver.WebServer;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.InvalidConfigurationException;
@@ -34,7 +35,10 @@ public class WebStats extends JavaPlugin implements Listener {
 	protected static DiscordWebhook discordWebhook;
 	protected static WebServer webserver;
 	
+	public static StatCollector statCollector;
+	
 	protected static PlayerIPStorage playerIPStorage;
+	public static PlayerRegistry playerRegistry;
 	protected static StatExporter statExporter;
 	
 	public static Logger logger;
@@ -59,7 +63,9 @@ public class WebStats extends JavaPlugin implements Listener {
 		
 		hasEssentials = Bukkit.getPluginManager().getPlugin("Essentials") != null;
 		
+		statCollector = new StatCollector(this);
 		playerIPStorage = new PlayerIPStorage(this);
+		playerRegistry = new PlayerRegistry(this);
 		statExporter = new StatExporter();
 		
 		// Register debug command
@@ -102,7 +108,12 @@ public class WebStats extends JavaPlugin implements Listener {
 		
 		try {
 			if (configData.useHTTPS) {
+				if (configData.useNIOWebServer) {
+					logger.log(Level.WARNING, "The nio web server does not support HTTPS, using the jdk web server instead");
+				}
 				webserver = new HTTPSWebServer();
+			} else if (configData.useNIOWebServer) {
+				webserver = new NIOWebServer();
 			} else {
 				webserver = new HTTPWebServer();
 			}
@@ -128,6 +139,7 @@ public class WebStats extends JavaPlugin implements Listener {
 		}
 		
 		scoreboardSource = null;
+		statCollector = null;
 		statExporter = null;
 		skinsRestorerHelper = null;
 		
@@ -144,6 +156,10 @@ public class WebStats extends JavaPlugin implements Listener {
 			playerIPStorage.disable();
 			playerIPStorage = null;
 		}
+		if (playerRegistry != null) {
+			playerRegistry.disable();
+			playerRegistry = null;
+		}
 		if (discordWebhook != null) {
 			discordWebhook.disable();
 			discordWebhook = null;
@@ -200,7 +216,8 @@ public class WebStats extends JavaPlugin implements Listener {
 	
 	protected @NotNull String debug() {
 		return getVersion() + "\n"
-				+ getSources();
+				+ getSources() + "\n"
+				+ statCollector.debug();
 	}
 	
 	/**
@@ -2,6 +2,7 @@ package nl.dantevg.webstats;
 
 import com.google.gson.Gson;
 import com.google.gson.annotations.SerializedName;
+import org.bukkit.configuration.ConfigurationSection;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -19,10 +20,37 @@ public class WebStatsConfig {
 	public final boolean useDiscordWebhook;
 	public final boolean useHTTPS;
 	
+	public final int collectInterval;
+	public final int collectTickBudget;
+	
 	public final boolean storePlayerIPs;
 	public final boolean exportCumulative;
 	public final int exportInterval;
 	
+	public final boolean compressResponses;
+	public final int compressionMinSize;
+	
+	public final boolean serverSentEvents;
+	public final int maxEventSubscribers;
+	
+	public final boolean useNIOWebServer;
+	public final int webServerThreads;
+	public final int webServerQueueSize;
+	public final int webServerBacklog;
+	public final boolean webServerVirtualThreads;
+	
+	public final boolean serveMetrics;
+	public final @NotNull List<String> metricsAllowedIPs;
+	public final @Nullable String metricsToken;
+	
+	public final boolean accessLog;
+	public final int accessLogMaxSize;
+	public final int accessLogFiles;
+	public final int accessLogBufferSize;
+	
+	public final @NotNull Map<String, RateLimitConfig> rateLimits;
+	public final @NotNull List<String> trustedProxies;
+	
 	public final boolean serveWebpage;
 	public final @Nullable String webpageTitle;
 	public final @NotNull List<String> additionalResources;
@@ -44,10 +72,44 @@ public class WebStatsConfig {
 		useDiscordWebhook = WebStats.config.contains("discord-webhook", true);
 		useHTTPS = WebStats.config.contains("https", true);
 		
+		collectInterval = WebStats.config.getInt("collect-interval");
+		collectTickBudget = WebStats.config.getInt("collect-tick-budget");
+		
 		storePlayerIPs = WebStats.config.getBoolean("store-player-ips");
 		exportCumulative = WebStats.config.getBoolean("export-cumulative");
 		exportInterval = WebStats.config.getInt("export-interval");
 		
+		compressResponses = WebStats.config.getBoolean("compress-responses");
+		compressionMinSize = WebStats.config.getInt("compression-min-size");
+		
+		serverSentEvents = WebStats.config.getBoolean("server-sent-events");
+		maxEventSubscribers = WebStats.config.getInt("max-event-subscribers");
+		
+		useNIOWebServer = "nio".equalsIgnoreCase(WebStats.config.getString("web-server-type"));
+		webServerThreads = WebStats.config.getInt("web-server-threads");
+		webServerQueueSize = WebStats.config.getInt("web-server-queue-size");
+		webServerBacklog = WebStats.config.getInt("web-server-backlog");
+		webServerVirtualThreads = WebStats.config.getBoolean("web-server-virtual-threads");
+		
+		serveMetrics = WebStats.config.getBoolean("metrics");
+		metricsAllowedIPs = WebStats.config.getStringList("metrics-allowed-ips");
+		metricsToken = WebStats.config.getString("metrics-token");
+		
+		accessLog = WebStats.config.getBoolean("access-log");
+		accessLogMaxSize = WebStats.config.getInt("access-log-max-size");
+		accessLogFiles = WebStats.config.getInt("access-log-files");
+		accessLogBufferSize = WebStats.config.getInt("access-log-buffer-size");
+		
+		rateLimits = new HashMap<>();
+		ConfigurationSection rateLimitSection = WebStats.config.getConfigurationSection("rate-limit");
+		if (rateLimitSection != null) {
+			for (String route : rateLimitSection.getKeys(false)) {
+				ConfigurationSection section = rateLimitSection.getConfigurationSection(route);
+				if (section != null) rateLimits.put(route, new RateLimitConfig(section));
+			}
+		}
+		trustedProxies = WebStats.config.getStringList("trusted-proxies");
+		
 		serveWebpage = WebStats.config.getBoolean("serve-webpage");
 		webpageTitle = WebStats.config.getString("webpage-title");
 		additionalResources = WebStats.config.getStringList("additional-resources");
@@ -113,6 +175,19 @@ public class WebStatsConfig {
 		
 	}
 	
+	public static class RateLimitConfig {
+		public final double perIP;
+		public final double global;
+		public final int maxConcurrent;
+		
+		public RateLimitConfig(@NotNull ConfigurationSection section) {
+			perIP = section.getDouble("per-ip");
+			global = section.getDouble("global");
+			maxConcurrent = section.getInt("max-concurrent");
+		}
+		
+	}
+	
 	public enum SortDirection {
 		@SerializedName("ascending")
 		ASCENDING,
@@ -31,7 +31,18 @@ public class DatabaseConverter {
 	}
 	
 	public @NotNull List<Map<String, String>> getValues() {
-		List<Map<String, String>> data = getTable(table);
+		return convert(getTable(table), conversions);
+	}
+	
+	/**
+	 * Apply the conversion commands to the rows from the database.
+	 *
+	 * @param data        the rows, which are modified in-place
+	 * @param conversions the conversion commands
+	 * @return the converted rows
+	 */
+	static @NotNull List<Map<String, String>> convert(@NotNull List<Map<String, String>> data,
+	                                                  @NotNull List<List<String>> conversions) {
 		for (List<String> command : conversions) {
 			switch (command.get(0)) {
 				case "filter": filter(data, command); break;
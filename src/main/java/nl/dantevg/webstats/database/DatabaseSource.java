@@ -1,7 +1,11 @@
 package nl.dantevg.webstats.database;
 
+import nl.dantevg.webstats.CollectionTask;
 import nl.dantevg.webstats.EntriesScores;
 import nl.dantevg.webstats.WebStats;
+import nl.dantevg.webstats.metrics.Histogram;
+import nl.dantevg.webstats.metrics.Metrics;
+import org.bukkit.Bukkit;
 import org.bukkit.configuration.InvalidConfigurationException;
 import org.jetbrains.annotations.NotNull;
 
@@ -9,6 +13,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 
 public class DatabaseSource {
@@ -18,6 +23,10 @@ public class DatabaseSource {
 	private final Map<String, DatabaseConnection> connections = new HashMap<>();
 	private final List<DatabaseConverter> conversions = new ArrayList<>();
 	
+	// The stats of the last successful collection, which are used again when
+	// the databases can not be read
+	private volatile @NotNull EntriesScores lastResult = new EntriesScores();
+	
 	public DatabaseSource() throws InvalidConfigurationException {
 		WebStats.logger.log(Level.INFO, "Enabling database source");
 		config = DatabaseConfig.getInstance(true);
@@ -34,7 +43,52 @@ public class DatabaseSource {
 		}
 	}
 	
-	public @NotNull EntriesScores getStats() {
+	/**
+	 * Start getting the stats from the databases. The queries run on another
+	 * thread, so that the main thread does not need to wait for the database.
+	 * When they fail, the result is the stats of the last successful
+	 * collection, so that the database scores do not disappear.
+	 *
+	 * @return the collection task, which is finished when the queries are
+	 */
+	public @NotNull CollectionTask collect() {
+		CompletableFuture<EntriesScores> result = new CompletableFuture<>();
+		Bukkit.getScheduler().runTaskAsynchronously(WebStats.getPlugin(WebStats.class), () -> {
+			try (Histogram.Timer ignored = Metrics.DATABASE_QUERY_SECONDS.time()) {
+				EntriesScores stats = getStats();
+				lastResult = stats;
+				result.complete(stats);
+			} catch (Exception e) {
+				WebStats.logger.log(Level.WARNING, "Could not get stats from database, using the previous stats", e);
+				result.complete(lastResult);
+			}
+		});
+		
+		return new CollectionTask() {
+			@Override
+			public boolean step() {
+				return result.isDone();
+			}
+			
+			// Nothing to do on the main thread until the queries are done
+			@Override
+			public boolean isWaiting() {
+				return !result.isDone();
+			}
+			
+			@Override
+			public @NotNull EntriesScores getResult() {
+				return result.join();
+			}
+			
+			@Override
+			public @NotNull EntriesScores runToCompletion() {
+				return result.join();
+			}
+		};
+	}
+	
+	public synchronized @NotNull EntriesScores getStats() {
 		// Get and convert each database/table combination
 		List<Map<String, String>> entries = new ArrayList<>();
 		for (DatabaseConverter conversion : conversions) {
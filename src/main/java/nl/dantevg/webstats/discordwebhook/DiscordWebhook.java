@@ -1,10 +1,14 @@
 package nl.dantevg.webstats.discordwebhook;
 
 import com.google.gson.Gson;
+import nl.dantevg.webstats.Leaderboards;
+import nl.dantevg.webstats.SortIndex;
+import nl.dantevg.webstats.StatCollector;
 import nl.dantevg.webstats.StatData;
-import nl.dantevg.webstats.Stats;
 import nl.dantevg.webstats.WebStats;
 import nl.dantevg.webstats.WebStatsConfig;
+import nl.dantevg.webstats.metrics.Histogram;
+import nl.dantevg.webstats.metrics.Metrics;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
@@ -64,11 +68,10 @@ public class DiscordWebhook implements Runnable {
 		}
 		
 		WebStats.logger.log(Level.INFO, "Sending Discord webhook update");
-		final StatData.Stats stats = Stats.getStats();
+		final StatCollector.Snapshot snapshot = WebStats.statCollector.getSnapshot();
+		final StatData.Stats stats = snapshot.stats;
 		
 		Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-			List<String> entries = new ArrayList<>(stats.entries);
-			
 			message.removeEmbeds();
 			
 			// Fill message
@@ -77,14 +80,13 @@ public class DiscordWebhook implements Runnable {
 				List<String> columns = (stats.columns != null)
 						? stats.columns
 						: stats.scores.columnKeySet().stream().sorted().collect(Collectors.toList());
-				sortEntries(entries, null, WebStatsConfig.SortDirection.DESCENDING);
-				message.addEmbed(makeEmbed(stats, columns, entries));
+				List<String> entries = stats.getSortIndex().getSorted(null, WebStatsConfig.SortDirection.DESCENDING);
+				message.addEmbed(makeEmbed(stats, columns, entries, config.displayCount));
 			} else {
 				// Add embeds according to config
 				for (DiscordConfig.EmbedConfig embedConfig : config.embeds) {
-					Map<String, String> columnToSortBy = stats.scores.column(embedConfig.sortColumn);
-					sortEntries(entries, columnToSortBy, embedConfig.sortDirection);
-					DiscordEmbed embed = makeEmbed(stats, embedConfig.columns, entries);
+					List<String> entries = getSortedEntries(snapshot, embedConfig);
+					DiscordEmbed embed = makeEmbed(stats, embedConfig.columns, entries, config.displayCount);
 					if (embedConfig.title != null) embed.title = embedConfig.title;
 					message.addEmbed(embed);
 				}
@@ -146,21 +148,18 @@ public class DiscordWebhook implements Runnable {
 		}
 	}
 	
-	private @NotNull DiscordEmbed makeEmbed(StatData.@NotNull Stats stats, @NotNull List<String> columns, @NotNull List<String> entries) {
+	static @NotNull DiscordEmbed makeEmbed(StatData.@NotNull Stats stats, @NotNull List<String> columns,
+	                                       @NotNull List<String> entries, int displayCount) {
 		// Filter out empty rows
 		List<String> nonEmptyEntries = entries.stream()
-				.filter(entry -> columns.stream()
-						.map(stats.scores::column)
-						.filter(Objects::nonNull)
-						.anyMatch(column -> column.get(entry) != null
-								&& !column.get(entry).trim().isEmpty()))
+				.filter(entry -> isNonEmpty(stats, columns, entry))
 				.collect(Collectors.toList());
 		
 		DiscordEmbed embed = new DiscordEmbed();
 		embed.addField(new DiscordEmbed.EmbedField(
 				"Player",
 				nonEmptyEntries.stream()
-						.limit(config.displayCount)
+						.limit(displayCount)
 						.collect(Collectors.joining("\n")),
 				true));
 		
@@ -169,7 +168,7 @@ public class DiscordWebhook implements Runnable {
 			if (column == null) continue;
 			
 			String values = nonEmptyEntries.stream()
-					.limit(config.displayCount)
+					.limit(displayCount)
 					.map((entryName) -> column.get(entryName) != null
 							? column.get(entryName) : "")
 					.collect(Collectors.joining("\n"));
@@ -195,7 +194,9 @@ public class DiscordWebhook implements Runnable {
 			request.setHeader("Content-Type", "application/json; charset=UTF-8");
 			request.setEntity(new StringEntity(new Gson().toJson(message)));
 			
+			Histogram.Timer timer = Metrics.DISCORD_SEND_SECONDS.time();
 			try (final CloseableHttpResponse response = httpClient.execute(request)) {
+				timer.close();
 				HttpEntity responseEntity = response.getEntity();
 				if (responseEntity == null) {
 					WebStats.logger.log(Level.WARNING, "Got no response content from Discord");
@@ -250,35 +251,50 @@ public class DiscordWebhook implements Runnable {
 		} else {
 			rateLimited = status == 429;
 		}
+		if (status == 429) Metrics.DISCORD_RATE_LIMITED.increment();
 	}
 	
-	private static void sortEntries(List<String> entries, Map<String, String> column, WebStatsConfig.SortDirection direction) {
-		entries.sort((aRow, bRow) -> {
-			String a, b;
-			if (column == null) {
-				// Null column means just sort player names
-				a = aRow;
-				b = bRow;
-			} else {
-				a = column.get(aRow);
-				b = column.get(bRow);
-			}
-			
-			try {
-				// Handle null (because Double.parseDouble cannot handle null)
-				if (a == null && b == null) return 0;
-				else if (a == null) return -direction.toInt();
-				else if (b == null) return direction.toInt();
-				
-				// Try to convert a and b to numbers
-				double aNum = Double.parseDouble(a);
-				double bNum = Double.parseDouble(b);
-				return direction.toInt() * Double.compare(aNum, bNum);
-			} catch (NumberFormatException e) {
-				// a or b were not numbers, compare as strings
-				return direction.toInt() * a.compareToIgnoreCase(b);
+	/**
+	 * Get the entries in the order of an embed. Uses the leaderboard of the
+	 * sort column, which is usually enough to fill the embed, and only sorts
+	 * all entries when it is not.
+	 */
+	private @NotNull List<String> getSortedEntries(@NotNull StatCollector.Snapshot snapshot,
+	                                               @NotNull DiscordConfig.EmbedConfig embedConfig) {
+		StatData.Stats stats = snapshot.stats;
+		if (stats.scores.containsColumn(embedConfig.sortColumn)) {
+			Leaderboards leaderboards = WebStats.statCollector.getLeaderboards();
+			for (int n = Math.max(1, config.displayCount); ; n *= 2) {
+				List<String> entries = leaderboards.getTop(snapshot, embedConfig.sortColumn, embedConfig.sortDirection, n)
+						.stream().map(score -> score.name).collect(Collectors.toList());
+				// The leaderboard ran out, also include the entries without a score
+				if (entries.size() < n) break;
+				if (countNonEmpty(stats, embedConfig.columns, entries) >= config.displayCount) return entries;
 			}
-		});
+		}
+		
+		List<String> entries = new ArrayList<>(stats.entries);
+		sortEntries(entries, stats.scores.column(embedConfig.sortColumn), embedConfig.sortDirection);
+		return entries;
+	}
+	
+	private static long countNonEmpty(StatData.@NotNull Stats stats, @NotNull List<String> columns, @NotNull List<String> entries) {
+		return entries.stream().filter(entry -> isNonEmpty(stats, columns, entry)).count();
+	}
+	
+	private static boolean isNonEmpty(StatData.@NotNull Stats stats, @NotNull List<String> columns, @NotNull String entry) {
+		return columns.stream()
+				.map(stats.scores::column)
+				.filter(Objects::nonNull)
+				.anyMatch(column -> column.get(entry) != null
+						&& !column.get(entry).trim().isEmpty());
+	}
+	
+	static void sortEntries(List<String> entries, Map<String, String> column, WebStatsConfig.SortDirection direction) {
+		entries.sort((aRow, bRow) -> (column == null)
+				// Null column means just sort player names
+				? direction.toInt() * SortIndex.compare(aRow, bRow)
+				: direction.toInt() * SortIndex.compare(column.get(aRow), column.get(bRow)));
 	}
 	
 	private static boolean isStatusCodeOk(int status) {
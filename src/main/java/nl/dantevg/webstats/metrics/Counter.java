@@ -0,0 +1,29 @@
+package nl.dantevg.webstats.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A value which only goes up, like the number of requests.
+ */
+public class Counter extends Metric<LongAdder> {
+	public Counter(@NotNull String name, @NotNull String help, @NotNull String... labelNames) {
+		super(name, help, labelNames);
+	}
+	
+	public void increment(@NotNull String... labelValues) {
+		child(labelValues, labels -> new LongAdder()).increment();
+	}
+	
+	@Override
+	void write(@NotNull StringBuilder out) {
+		writeHeader(out, "counter");
+		children.forEach((labels, value) -> {
+			out.append(name);
+			writeLabels(out, labels, null, null);
+			out.append(' ').append(value.sum()).append('\n');
+		});
+	}
+	
+}
@@ -0,0 +1,117 @@
+package nl.dantevg.webstats.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts observations (like durations) in buckets. Values are observed as
+ * whole numbers (like nanoseconds or bytes), and converted to the base unit
+ * (like seconds) only when writing.
+ */
+public class Histogram extends Metric<Histogram.Child> {
+	// Bucket upper bounds in seconds, from 0.1 ms to 10 s
+	private static final double[] SECONDS_BUCKETS = {
+			0.0001, 0.0005, 0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 10
+	};
+	// Bucket upper bounds in bytes, from 1 KiB to 16 MiB
+	private static final double[] BYTES_BUCKETS = {
+			1 << 10, 1 << 12, 1 << 14, 1 << 16, 1 << 18, 1 << 20, 1 << 22, 1 << 24
+	};
+	
+	private final double[] buckets;
+	private final long[] bucketLimits; // Bucket upper bounds, in observed units
+	private final double scale; // Observed unit to base unit
+	
+	private Histogram(@NotNull String name, @NotNull String help, double[] buckets, double scale,
+	                  @NotNull String... labelNames) {
+		super(name, help, labelNames);
+		this.buckets = buckets;
+		this.scale = scale;
+		this.bucketLimits = new long[buckets.length];
+		for (int i = 0; i < buckets.length; i++) bucketLimits[i] = (long) (buckets[i] / scale);
+	}
+	
+	/**
+	 * Create a histogram of durations, observed in nanoseconds and written in
+	 * seconds.
+	 */
+	public static @NotNull Histogram seconds(@NotNull String name, @NotNull String help, @NotNull String... labelNames) {
+		return new Histogram(name, help, SECONDS_BUCKETS, 1e-9, labelNames);
+	}
+	
+	/**
+	 * Create a histogram of sizes in bytes.
+	 */
+	public static @NotNull Histogram bytes(@NotNull String name, @NotNull String help, @NotNull String... labelNames) {
+		return new Histogram(name, help, BYTES_BUCKETS, 1, labelNames);
+	}
+	
+	public void observe(long value, @NotNull String... labelValues) {
+		child(labelValues, labels -> new Child(buckets.length)).observe(value);
+	}
+	
+	/**
+	 * Start timing something. The duration is observed when the returned
+	 * timer is closed, so use it in a try-with-resources block.
+	 *
+	 * @param labelValues the label values to observe the duration with
+	 * @return the started timer
+	 */
+	public @NotNull Timer time(@NotNull String... labelValues) {
+		return new Timer(child(labelValues, labels -> new Child(buckets.length)));
+	}
+	
+	@Override
+	void write(@NotNull StringBuilder out) {
+		writeHeader(out, "histogram");
+		children.forEach((labels, child) -> {
+			long cumulative = 0;
+			for (int i = 0; i <= buckets.length; i++) {
+				cumulative += child.counts[i].sum();
+				out.append(name).append("_bucket");
+				writeLabels(out, labels, "le", (i < buckets.length) ? Double.toString(buckets[i]) : "+Inf");
+				out.append(' ').append(cumulative).append('\n');
+			}
+			out.append(name).append("_sum");
+			writeLabels(out, labels, null, null);
+			out.append(' ').append(child.sum.sum() * scale).append('\n');
+			out.append(name).append("_count");
+			writeLabels(out, labels, null, null);
+			out.append(' ').append(cumulative).append('\n');
+		});
+	}
+	
+	class Child {
+		// Non-cumulative count per bucket, the last one is for +Inf
+		private final LongAdder[] counts;
+		private final LongAdder sum = new LongAdder();
+		
+		private Child(int nBuckets) {
+			counts = new LongAdder[nBuckets + 1];
+			for (int i = 0; i < counts.length; i++) counts[i] = new LongAdder();
+		}
+		
+		void observe(long value) {
+			int i = 0;
+			while (i < bucketLimits.length && value > bucketLimits[i]) i++;
+			counts[i].increment();
+			sum.add(value);
+		}
+	}
+	
+	public static class Timer implements AutoCloseable {
+		private final @NotNull Child child;
+		private final long start = System.nanoTime();
+		
+		private Timer(@NotNull Child child) {
+			this.child = child;
+		}
+		
+		@Override
+		public void close() {
+			child.observe(System.nanoTime() - start);
+		}
+	}
+	
+}
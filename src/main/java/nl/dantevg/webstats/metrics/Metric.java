@@ -0,0 +1,77 @@
+package nl.dantevg.webstats.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A named metric with a fixed set of labels. Every combination of label
+ * values has its own child, which holds the actual values.
+ *
+ * @param <T> the type of the children
+ */
+public abstract class Metric<T> {
+	protected final @NotNull String name;
+	protected final @NotNull String help;
+	protected final @NotNull String[] labelNames;
+	protected final Map<List<String>, T> children = new ConcurrentHashMap<>();
+	
+	protected Metric(@NotNull String name, @NotNull String help, @NotNull String... labelNames) {
+		this.name = name;
+		this.help = help;
+		this.labelNames = labelNames;
+	}
+	
+	protected @NotNull T child(@NotNull String[] labelValues, @NotNull Function<List<String>, T> create) {
+		if (labelValues.length != labelNames.length) {
+			throw new IllegalArgumentException("Metric " + name + " needs " + labelNames.length + " labels");
+		}
+		// Quick path without allocating a new child
+		T child = children.get(Arrays.asList(labelValues));
+		return (child != null) ? child : children.computeIfAbsent(Arrays.asList(labelValues.clone()), create);
+	}
+	
+	/**
+	 * Write this metric in the Prometheus text exposition format.
+	 *
+	 * @param out the output to append to
+	 */
+	abstract void write(@NotNull StringBuilder out);
+	
+	protected void writeHeader(@NotNull StringBuilder out, @NotNull String type) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+	
+	protected void writeLabels(@NotNull StringBuilder out, @NotNull List<String> labelValues,
+	                           String extraName, String extraValue) {
+		if (labelValues.isEmpty() && extraName == null) return;
+		out.append('{');
+		for (int i = 0; i < labelValues.size(); i++) {
+			if (i > 0) out.append(',');
+			appendLabel(out, labelNames[i], labelValues.get(i));
+		}
+		if (extraName != null) {
+			if (!labelValues.isEmpty()) out.append(',');
+			appendLabel(out, extraName, extraValue);
+		}
+		out.append('}');
+	}
+	
+	private static void appendLabel(@NotNull StringBuilder out, @NotNull String name, @NotNull String value) {
+		out.append(name).append("=\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\') out.append("\\\\");
+			else if (c == '"') out.append("\\\"");
+			else if (c == '\n') out.append("\\n");
+			else out.append(c);
+		}
+		out.append('"');
+	}
+	
+}
@@ -0,0 +1,78 @@
+package nl.dantevg.webstats.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * All metrics of WebStats, which can be served in the Prometheus text format.
+ * Recording a value only increments a few LongAdders, so the metrics are
+ * always recorded, even when they are not served.
+ */
+public class Metrics {
+	private static final List<Metric<?>> metrics = new ArrayList<>();
+	
+	public static final Histogram COLLECTION_SECONDS = register(Histogram.seconds(
+			"webstats_collection_seconds",
+			"Main thread time spent collecting stats in one collection pass, per source",
+			"source"));
+	public static final Histogram COLLECTION_TICK_SECONDS = register(Histogram.seconds(
+			"webstats_collection_tick_seconds",
+			"Main thread time spent collecting stats in a single tick"));
+	public static final Histogram DATABASE_QUERY_SECONDS = register(Histogram.seconds(
+			"webstats_database_query_seconds",
+			"Time spent getting stats from the database source, off the main thread"));
+	public static final Histogram MAIN_THREAD_WAIT_SECONDS = register(Histogram.seconds(
+			"webstats_main_thread_wait_seconds",
+			"Time spent waiting for the main thread to collect stats, when no stats were collected yet"));
+	public static final Histogram SERIALIZATION_SECONDS = register(Histogram.seconds(
+			"webstats_serialization_seconds",
+			"Time spent creating responses which were not cached yet",
+			"endpoint"));
+	public static final Histogram SERIALIZATION_BYTES = register(Histogram.bytes(
+			"webstats_serialization_bytes",
+			"Size of responses which were not cached yet, before compression",
+			"endpoint"));
+	public static final Histogram REQUEST_SECONDS = register(Histogram.seconds(
+			"webstats_http_request_seconds",
+			"Time spent handling HTTP requests",
+			"endpoint"));
+	public static final Counter RESPONSES = register(new Counter(
+			"webstats_http_responses_total",
+			"Number of HTTP responses, by status code",
+			"endpoint", "code"));
+	public static final Counter ACCESS_LOG_DROPPED = register(new Counter(
+			"webstats_access_log_dropped_total",
+			"Number of requests left out of the access log because its buffer was full"));
+	public static final Histogram STORAGE_SECONDS = register(Histogram.seconds(
+			"webstats_storage_seconds",
+			"Time spent saving and loading stored stats",
+			"storage", "operation"));
+	public static final Histogram DISCORD_SEND_SECONDS = register(Histogram.seconds(
+			"webstats_discord_send_seconds",
+			"Time spent sending Discord webhook messages"));
+	public static final Counter DISCORD_RATE_LIMITED = register(new Counter(
+			"webstats_discord_rate_limited_total",
+			"Number of times the Discord webhook got rate limited"));
+	
+	private Metrics() {
+	}
+	
+	private static <T extends Metric<?>> T register(T metric) {
+		metrics.add(metric);
+		return metric;
+	}
+	
+	/**
+	 * Get all metrics in the Prometheus text exposition format.
+	 *
+	 * @return the metrics
+	 */
+	public static @NotNull String scrape() {
+		StringBuilder out = new StringBuilder();
+		for (Metric<?> metric : metrics) metric.write(out);
+		return out.toString();
+	}
+	
+}
@@ -15,8 +15,12 @@ public class CachedOfflinePlayer {
 	private final @Nullable String name;
 	
 	public CachedOfflinePlayer(@NotNull OfflinePlayer player) {
+		this(player, player.getName());
+	}
+	
+	public CachedOfflinePlayer(@NotNull OfflinePlayer player, @Nullable String name) {
 		this.player = player;
-		this.name = player.getName();
+		this.name = name;
 	}
 	
 	@NotNull
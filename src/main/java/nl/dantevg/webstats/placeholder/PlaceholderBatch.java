@@ -0,0 +1,76 @@
+package nl.dantevg.webstats.placeholder;
+
+import me.clip.placeholderapi.PlaceholderAPI;
+import org.bukkit.OfflinePlayer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Resolves multiple placeholders for one player with a single PlaceholderAPI
+ * call. The placeholders are put in one template, separated by numbered
+ * markers, and the result is split at those markers again.
+ * <p>
+ * The markers are made of a control character that placeholders normally
+ * don't output. If the result does not contain exactly the separators of the
+ * markers, a value contained (or swallowed) one and the result can't be split
+ * reliably, so every placeholder is resolved on its own instead.
+ */
+public class PlaceholderBatch {
+	private static final char SEPARATOR = '\u001F'; // ASCII unit separator
+	
+	/**
+	 * Resolve placeholders for a player.
+	 *
+	 * @param player       the player, or null for placeholders without player
+	 * @param placeholders the placeholders to resolve
+	 * @return the resolved value of every placeholder, in the same order
+	 */
+	public static @NotNull String[] setPlaceholders(@Nullable OfflinePlayer player, @NotNull List<String> placeholders) {
+		String[] values = new String[placeholders.size()];
+		if (placeholders.isEmpty()) return values;
+		if (placeholders.size() == 1) {
+			values[0] = PlaceholderAPI.setPlaceholders(player, placeholders.get(0));
+			return values;
+		}
+		
+		StringBuilder template = new StringBuilder();
+		for (int i = 0; i < placeholders.size(); i++) {
+			if (i > 0) template.append(marker(i));
+			template.append(placeholders.get(i));
+		}
+		String result = PlaceholderAPI.setPlaceholders(player, template.toString());
+		if (result == null || countSeparators(result) != 2 * (placeholders.size() - 1)) result = null;
+		
+		int start = 0;
+		for (int i = 0; i < placeholders.size() && result != null; i++) {
+			String nextMarker = (i + 1 < placeholders.size()) ? marker(i + 1) : null;
+			int end = (nextMarker != null) ? result.indexOf(nextMarker, start) : result.length();
+			// The rest can't be split if the marker is gone
+			if (end < 0) break;
+			String value = result.substring(start, end);
+			if (value.indexOf(SEPARATOR) < 0) values[i] = value;
+			if (nextMarker != null) start = end + nextMarker.length();
+		}
+		
+		// Fall back to separate calls for the values that could not be split
+		for (int i = 0; i < placeholders.size(); i++) {
+			if (values[i] == null) values[i] = PlaceholderAPI.setPlaceholders(player, placeholders.get(i));
+		}
+		return values;
+	}
+	
+	private static int countSeparators(@NotNull String result) {
+		int count = 0;
+		for (int i = 0; i < result.length(); i++) {
+			if (result.charAt(i) == SEPARATOR) count++;
+		}
+		return count;
+	}
+	
+	private static @NotNull String marker(int i) {
+		return SEPARATOR + Integer.toString(i) + SEPARATOR;
+	}
+	
+}
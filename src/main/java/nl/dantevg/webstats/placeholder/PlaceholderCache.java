@@ -0,0 +1,109 @@
+package nl.dantevg.webstats.placeholder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import nl.dantevg.webstats.WebStats;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Cache of the values of one placeholder, per player. Values expire after the
+ * TTL of the placeholder, and the least recently used values are evicted when
+ * the cache is full.
+ * <p>
+ * Values of online players are refreshed ahead: when a value is used after
+ * most of its TTL has passed, the cached value is returned and a new value is
+ * resolved in the background, so that it does not expire while the player
+ * is online.
+ */
+public class PlaceholderCache {
+	// UUID to use for the server placeholders, which have no player
+	private static final UUID SERVER = new UUID(0, 0);
+	// Refresh values of online players after this part of the TTL
+	private static final double REFRESH_AHEAD = 0.8;
+	
+	private final @NotNull String placeholder;
+	private final @NotNull Cache<UUID, Value> values;
+	private final long refreshAfterMillis;
+	private final @NotNull Executor refreshExecutor;
+	private final LongAdder refreshes = new LongAdder();
+	
+	/**
+	 * @param placeholder     the placeholder to cache the values of
+	 * @param ttlSeconds      the time after which values expire
+	 * @param maxSize         the maximum number of cached values
+	 * @param refreshExecutor the executor to refresh values of online players
+	 *                        on. Must run the tasks on a thread where the
+	 *                        placeholder can be resolved.
+	 */
+	public PlaceholderCache(@NotNull String placeholder, long ttlSeconds, int maxSize, @NotNull Executor refreshExecutor) {
+		this.placeholder = placeholder;
+		this.values = CacheBuilder.newBuilder()
+				.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+				.maximumSize(maxSize)
+				.recordStats()
+				.build();
+		this.refreshAfterMillis = (long) (TimeUnit.SECONDS.toMillis(ttlSeconds) * REFRESH_AHEAD);
+		this.refreshExecutor = refreshExecutor;
+	}
+	
+	/**
+	 * Get the cached value, or resolve and cache it if there is none.
+	 *
+	 * @param uuid     the UUID of the player, or null for the server
+	 * @param online   whether the player is online
+	 * @param resolver the function to resolve the placeholder
+	 * @return the value, or null if it could not be resolved
+	 */
+	public @Nullable String get(@Nullable UUID uuid, boolean online, @NotNull Supplier<String> resolver) {
+		UUID key = (uuid != null) ? uuid : SERVER;
+		Value value = values.getIfPresent(key);
+		if (value == null) return resolve(key, resolver);
+		
+		if (online && System.currentTimeMillis() - value.resolvedAt >= refreshAfterMillis
+				&& value.refreshing.compareAndSet(false, true)) {
+			refreshes.increment();
+			refreshExecutor.execute(() -> resolve(key, resolver));
+		}
+		return value.value;
+	}
+	
+	private @Nullable String resolve(@NotNull UUID key, @NotNull Supplier<String> resolver) {
+		String value;
+		try {
+			value = resolver.get();
+		} catch (RuntimeException e) {
+			WebStats.logger.log(Level.WARNING, "Could not resolve placeholder " + placeholder, e);
+			values.invalidate(key);
+			return null;
+		}
+		if (value != null) values.put(key, new Value(value));
+		return value;
+	}
+	
+	public @NotNull String debug() {
+		CacheStats stats = values.stats();
+		return String.format("%s: %d values, %d hits, %d misses, %d refreshes",
+				placeholder, values.size(), stats.hitCount(), stats.missCount(), refreshes.sum());
+	}
+	
+	private static class Value {
+		final @NotNull String value;
+		final long resolvedAt = System.currentTimeMillis();
+		final AtomicBoolean refreshing = new AtomicBoolean(false);
+		
+		Value(@NotNull String value) {
+			this.value = value;
+		}
+	}
+	
+}
@@ -5,9 +5,7 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.InvalidConfigurationException;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 public class PlaceholderConfig {
 	private static final String DOT_REPLACEMENT = "[dot]";
@@ -18,6 +16,10 @@ public class PlaceholderConfig {
 	public final @Nullable String storeInDatabase;
 	public final boolean saveOnPluginDisable;
 	public final Map<String, String> emptyValues;
+	public final Set<String> asyncPlaceholders;
+	public final int asyncThreads;
+	public final Map<String, Long> cacheTTLs; // In seconds
+	public final int cacheSize;
 	
 	private PlaceholderConfig() throws InvalidConfigurationException {
 		ConfigurationSection section = WebStats.config.getConfigurationSection("placeholders");
@@ -25,7 +27,12 @@ public class PlaceholderConfig {
 			throw new InvalidConfigurationException("Invalid configuration: placeholders should be a key-value map");
 		}
 		
-		placeholders = sanitizePlaceholderMap(section.getValues(false));
+		placeholders = new HashMap<>();
+		asyncPlaceholders = new HashSet<>();
+		cacheTTLs = new HashMap<>();
+		readPlaceholders(section);
+		asyncThreads = WebStats.config.getInt("placeholder-async-threads", 2);
+		cacheSize = WebStats.config.getInt("placeholder-cache-size", 10000);
 		storeInFile = WebStats.config.getBoolean("store-placeholders-in-file");
 		storeInDatabase = WebStats.config.getString("store-placeholders-database");
 		saveOnPluginDisable = WebStats.config.getBoolean("save-placeholders-on-plugin-disable");
@@ -47,6 +54,29 @@ public class PlaceholderConfig {
 		return getInstance(false);
 	}
 	
+	// Placeholders are either a displayed name, or a section with the name
+	// and whether the placeholder can be resolved off the main thread and how
+	// long its values can be cached
+	private void readPlaceholders(ConfigurationSection section) throws InvalidConfigurationException {
+		for (Map.Entry<String, Object> entry : section.getValues(false).entrySet()) {
+			String placeholder = entry.getKey().replace(DOT_REPLACEMENT, ".");
+			if (entry.getValue() instanceof String) {
+				placeholders.put(placeholder, (String) entry.getValue());
+			} else if (entry.getValue() instanceof ConfigurationSection) {
+				ConfigurationSection placeholderSection = (ConfigurationSection) entry.getValue();
+				String name = placeholderSection.getString("name");
+				if (name == null) {
+					throw new InvalidConfigurationException("Invalid configuration: placeholder "
+							+ placeholder + " has no name");
+				}
+				placeholders.put(placeholder, name);
+				if (placeholderSection.getBoolean("async")) asyncPlaceholders.add(placeholder);
+				long cacheTTL = placeholderSection.getLong("cache-ttl");
+				if (cacheTTL > 0) cacheTTLs.put(placeholder, cacheTTL);
+			}
+		}
+	}
+	
 	// Remove non-string values from map, and replace any occurrence of '[dot]' with '.',
 	// because Spigot's YAML parser cannot handle keys with dots (for permissions).
 	private static Map<String, String> sanitizePlaceholderMap(Map<String, Object> input) {
@@ -3,8 +3,10 @@ package nl.dantevg.webstats.placeholder;
 import nl.dantevg.webstats.WebStats;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.server.PluginDisableEvent;
+import org.jetbrains.annotations.Nullable;
 
 import java.time.Duration;
 import java.time.Instant;
@@ -13,23 +15,31 @@ import java.util.logging.Level;
 public class PlaceholderListener implements Listener {
 	private static final Duration PLUGIN_DISABLE_WAIT = Duration.ofSeconds(30);
 	
-	private final PlaceholderStorage storage;
+	private final PlaceholderSource placeholderSource;
+	private final @Nullable PlaceholderStorage storage;
 	private final boolean SAVE_ON_PLUGIN_DISABLE;
 	private Instant lastPluginDisable = Instant.now();
 	
-	public PlaceholderListener(PlaceholderStorage storage, boolean saveOnPluginDisable) {
+	public PlaceholderListener(PlaceholderSource placeholderSource, @Nullable PlaceholderStorage storage, boolean saveOnPluginDisable) {
+		this.placeholderSource = placeholderSource;
 		this.storage = storage;
 		SAVE_ON_PLUGIN_DISABLE = saveOnPluginDisable;
 	}
 	
+	@EventHandler
+	public void onPlayerJoin(PlayerJoinEvent event) {
+		placeholderSource.markActive(event.getPlayer().getUniqueId());
+	}
+	
 	@EventHandler
 	public void onPlayerLeave(PlayerQuitEvent event) {
-		storage.save(new CachedOfflinePlayer(event.getPlayer()));
+		placeholderSource.markActive(event.getPlayer().getUniqueId());
+		if (storage != null) storage.save(new CachedOfflinePlayer(event.getPlayer()));
 	}
 	
 	@EventHandler
 	public void onPluginDisable(PluginDisableEvent event) {
-		if (!SAVE_ON_PLUGIN_DISABLE) return;
+		if (!SAVE_ON_PLUGIN_DISABLE || storage == null) return;
 		
 		final Instant now = Instant.now();
 		if (now.isAfter(lastPluginDisable.plus(PLUGIN_DISABLE_WAIT))) {
@@ -2,142 +2,197 @@ package nl.dantevg.webstats.placeholder;
 
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
+import com.google.common.collect.Tables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import me.clip.placeholderapi.PlaceholderAPI;
+import nl.dantevg.webstats.CollectionTask;
 import nl.dantevg.webstats.EntriesScores;
-import nl.dantevg.webstats.EssentialsHelper;
 import nl.dantevg.webstats.WebStats;
 import nl.dantevg.webstats.WebStatsConfig;
 import nl.dantevg.webstats.storage.StorageMethod;
 import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
 public class PlaceholderSource {
+	private static final int PLAYERS_PER_STEP = 32;
+	
 	final PlaceholderConfig config;
 	private final Map<UUID, CachedOfflinePlayer> offlinePlayerCache = new HashMap<>();
 	
 	private PlaceholderStorage storage;
 	
+	// Resolves the placeholders that are marked as async, or null if there are none
+	private final @Nullable ExecutorService asyncExecutor;
+	
+	// Placeholder -> cached values, for the placeholders with a cache TTL
+	private final Map<String, PlaceholderCache> caches = new HashMap<>();
+	
+	// The scores of the previous collections. After the first collection,
+	// only the rows of players who were online since the previous collection
+	// are collected again. Only changed on the main thread.
+	private final Table<String, String, String> scores = HashBasedTable.create();
+	private final Set<String> entries = new HashSet<>();
+	private final Map<UUID, String> entryNames = new HashMap<>();
+	// Whether a collection of all players has succeeded
+	private boolean collectedAll = false;
+	
+	// Players who joined or left since the start of the last collection
+	private final Set<UUID> activePlayers = ConcurrentHashMap.newKeySet();
+	
 	public PlaceholderSource() throws InvalidConfigurationException {
 		WebStats.logger.log(Level.INFO, "Enabling placeholder source");
 		config = PlaceholderConfig.getInstance(true);
 		
+		asyncExecutor = config.asyncPlaceholders.isEmpty() ? null
+				: Executors.newFixedThreadPool(Math.max(1, config.asyncThreads), new ThreadFactoryBuilder()
+						.setNameFormat("WebStats placeholder worker %d").setDaemon(true).build());
+		
+		config.cacheTTLs.forEach((placeholder, ttl) -> {
+			// Refresh on the thread the placeholder is normally resolved on
+			Executor refreshExecutor = (asyncExecutor != null && config.asyncPlaceholders.contains(placeholder))
+					? asyncExecutor
+					: task -> Bukkit.getScheduler().runTask(WebStats.getPlugin(WebStats.class), task);
+			caches.put(placeholder, new PlaceholderCache(placeholder, ttl, config.cacheSize, refreshExecutor));
+		});
+		
 		if (config.storeInFile || config.storeInDatabase != null) {
 			storage = new PlaceholderStorage(this);
 			storage.prune(new HashSet<>(config.placeholders.values()));
 		}
 		
-		// Already cache all player names at the start of the server
-		Set<OfflinePlayer> players = getEntriesAsPlayers();
-		if (players.size() > 100)
-			WebStats.logger.log(Level.INFO, "Caching player names of " + players.size() + " players");
-		
-		for (OfflinePlayer player : players) {
-			offlinePlayerCache.put(player.getUniqueId(), new CachedOfflinePlayer(player));
-		}
-	}
-	
-	private @NotNull Set<OfflinePlayer> getEntriesAsPlayers() {
-		Set<OfflinePlayer> entries = (!Bukkit.getOnlineMode() && WebStats.hasEssentials)
-				? EssentialsHelper.getOfflinePlayers() : null;
-		if (entries == null) entries = new HashSet<>();
-		entries.addAll(Arrays.asList(Bukkit.getOfflinePlayers()));
-		return entries;
+		Bukkit.getPluginManager().registerEvents(
+				new PlaceholderListener(this, storage, config.saveOnPluginDisable),
+				WebStats.getPlugin(WebStats.class));
 	}
 	
-	private CachedOfflinePlayer getCachedPlayer(OfflinePlayer player) {
+	private CachedOfflinePlayer getCachedPlayer(UUID uuid) {
 		// Only cache offline players, otherwise things go south
-		if (player.isOnline()) {
-			offlinePlayerCache.remove(player.getUniqueId());
-			return new CachedOfflinePlayer(player);
+		Player onlinePlayer = Bukkit.getPlayer(uuid);
+		if (onlinePlayer != null) {
+			offlinePlayerCache.remove(uuid);
+			return new CachedOfflinePlayer(onlinePlayer);
 		}
 		
-		CachedOfflinePlayer cachedPlayer = offlinePlayerCache.get(player.getUniqueId());
+		CachedOfflinePlayer cachedPlayer = offlinePlayerCache.get(uuid);
 		if (cachedPlayer == null) {
-			cachedPlayer = new CachedOfflinePlayer(player);
-			offlinePlayerCache.put(player.getUniqueId(), cachedPlayer);
+			// Take the name from the registry, getting it from the
+			// OfflinePlayer reads the player's data file
+			cachedPlayer = new CachedOfflinePlayer(Bukkit.getOfflinePlayer(uuid),
+					WebStats.playerRegistry.getName(uuid));
+			offlinePlayerCache.put(uuid, cachedPlayer);
 		}
 		return cachedPlayer;
 	}
 	
 	@NotNull Set<CachedOfflinePlayer> getEntriesAsCachedPlayers() {
-		return getEntriesAsPlayers().stream()
+		return WebStats.playerRegistry.getUUIDs().stream()
 				.map(this::getCachedPlayer)
 				.collect(Collectors.toSet());
 	}
 	
-	private @NotNull Set<String> getEntries() {
-		return getEntriesAsPlayers().stream()      // all entries as OfflinePlayers
-				.map(this::getCachedPlayer)
-				.map(CachedOfflinePlayer::getName) // OfflinePlayer -> String
-				.filter(Objects::nonNull)          // remove null names
-				.collect(Collectors.toSet());
-	}
-	
 	/**
-	 * Get up-to-date score for player, or stored one if the player is offline.
-	 * 
-	 * @param player The player to get the score for
-	 * @param placeholder The placeholder to get the score for
-	 * @param placeholderName The name of the placeholder
-	 * @return The score, or null if the score is not set
+	 * Mark a player as active, so that their scores are collected again in
+	 * the next collection.
+	 *
+	 * @param uuid the UUID of the player
 	 */
-	private @Nullable String getPlaceholderForPlayer(CachedOfflinePlayer player, String placeholder, String placeholderName) {
-		if (player.getName() == null) return null;
-		
-		// If the player is online, get the most up-to-date value.
-		// If the player is offline, get the stored value if it is stored, because placeholder
-		// plugins may just yield 0 (which is indistinguishable from a real score of 0.)
-		String score = null;
-		if (storage != null) score = storage.getScore(player.getUniqueId(), placeholderName);
-		if (player.getOfflinePlayer().isOnline() || !isPlaceholderSet(placeholder, score)) {
-			score = PlaceholderAPI.setPlaceholders(player.getOfflinePlayer(), placeholder);
-		}
-		return isPlaceholderSet(placeholder, score) ? score : null;
+	void markActive(@NotNull UUID uuid) {
+		activePlayers.add(uuid);
 	}
 	
-	private @Nullable String getPlaceholderForServer(String placeholder) {
-		String score = PlaceholderAPI.setPlaceholders(null, placeholder);
-		return isPlaceholderSet(placeholder, score) ? score : null;
+	// The players to collect the scores of: everyone the first time, after
+	// that only the players who were online since the previous collection
+	private @NotNull List<CachedOfflinePlayer> getPlayersToCollect() {
+		if (!collectedAll) {
+			activePlayers.clear();
+			return new ArrayList<>(getEntriesAsCachedPlayers());
+		}
+		
+		Set<UUID> uuids = new HashSet<>();
+		for (Player player : Bukkit.getOnlinePlayers()) uuids.add(player.getUniqueId());
+		for (Iterator<UUID> it = activePlayers.iterator(); it.hasNext(); ) {
+			UUID uuid = it.next();
+			it.remove();
+			uuids.add(uuid);
+			// The player may have joined with a new name
+			offlinePlayerCache.remove(uuid);
+		}
+		return uuids.stream().map(this::getCachedPlayer).collect(Collectors.toList());
 	}
 	
 	/**
-	 * Get all scores for all players from PlaceholderAPI.
-	 * Alternatively find stored scores from PlaceholderStorage.
-	 * 
-	 * @return A table of player names (rows) and placeholder names (columns) to
-	 * their values
+	 * Get up-to-date scores for player, or stored ones if the player is
+	 * offline. The placeholders that are not stored or cached are resolved
+	 * with a single PlaceholderAPI call. Can be called off the main thread,
+	 * the online state and stored scores must be read beforehand on the main
+	 * thread.
+	 *
+	 * @param player       The player to get the scores for
+	 * @param placeholders The placeholders and their names
+	 * @param online       Whether the player is online
+	 * @param storedScores The stored score of every placeholder, or null
+	 * @return A map of placeholder names to their values, if they are set
 	 */
-	private @NotNull Table<String, String, String> getScores() {
-		Table<String, String, String> values = HashBasedTable.create();
-		Set<CachedOfflinePlayer> players = getEntriesAsCachedPlayers();
-		
-		config.placeholders.forEach((placeholder, placeholderName) -> {
-			if (WebStatsConfig.getInstance().serverColumns.contains(placeholderName)) {
-				String score = getPlaceholderForServer(placeholder);
-				if (score != null) values.put("#server", placeholderName, score);
-			} else {
-				for (CachedOfflinePlayer player : players) {
-					String score = getPlaceholderForPlayer(player, placeholder, placeholderName);
-					// Only add the score if it is not empty
-					if (score != null) values.put(player.getName(), placeholderName, score);
+	private @NotNull Map<String, String> getPlaceholdersForPlayer(CachedOfflinePlayer player,
+	                                                              List<Map.Entry<String, String>> placeholders,
+	                                                              boolean online, @Nullable String[] storedScores) {
+		Map<String, String> scores = new HashMap<>();
+		if (player.getName() == null) return scores;
+		
+		List<Map.Entry<String, String>> toResolve = new ArrayList<>();
+		for (int i = 0; i < placeholders.size(); i++) {
+			Map.Entry<String, String> placeholder = placeholders.get(i);
+			// If the player is online, get the most up-to-date value.
+			// If the player is offline, get the stored value if it is stored, because placeholder
+			// plugins may just yield 0 (which is indistinguishable from a real score of 0.)
+			String score = (storedScores != null) ? storedScores[i] : null;
+			if (online || !isPlaceholderSet(placeholder.getKey(), score)) {
+				PlaceholderCache cache = caches.get(placeholder.getKey());
+				if (cache == null) {
+					toResolve.add(placeholder);
+					continue;
 				}
+				score = cache.get(player.getUniqueId(), online,
+						() -> PlaceholderAPI.setPlaceholders(player.getOfflinePlayer(), placeholder.getKey()));
 			}
-		});
-		
-		if (WebStatsConfig.getInstance().serverName != null) {
-			String rawServerName = WebStatsConfig.getInstance().serverName;
-			String serverName = getPlaceholderForServer(rawServerName);
-			values.put("#server", "Player", (serverName != null) ? serverName : rawServerName);
+			if (isPlaceholderSet(placeholder.getKey(), score)) scores.put(placeholder.getValue(), score);
 		}
 		
-		return values;
+		String[] resolved = PlaceholderBatch.setPlaceholders(player.getOfflinePlayer(),
+				toResolve.stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+		for (int i = 0; i < resolved.length; i++) {
+			if (isPlaceholderSet(toResolve.get(i).getKey(), resolved[i])) {
+				scores.put(toResolve.get(i).getValue(), resolved[i]);
+			}
+		}
+		return scores;
+	}
+	
+	// Read the stored scores of an offline player, on the main thread
+	private @Nullable String[] getStoredScores(CachedOfflinePlayer player, List<Map.Entry<String, String>> placeholders,
+	                                           boolean online) {
+		if (storage == null || online) return null;
+		String[] storedScores = new String[placeholders.size()];
+		for (int i = 0; i < placeholders.size(); i++) {
+			storedScores[i] = storage.getScore(player.getUniqueId(), placeholders.get(i).getValue());
+		}
+		return storedScores;
+	}
+	
+	private @Nullable String getPlaceholderForServer(String placeholder) {
+		PlaceholderCache cache = caches.get(placeholder);
+		String score = (cache != null)
+				? cache.get(null, false, () -> PlaceholderAPI.setPlaceholders(null, placeholder))
+				: PlaceholderAPI.setPlaceholders(null, placeholder);
+		return isPlaceholderSet(placeholder, score) ? score : null;
 	}
 	
 	/**
@@ -151,19 +206,222 @@ public class PlaceholderSource {
 		Map<String, String> scores = new HashMap<>();
 		if (player.getName() == null) return scores;
 		
-		config.placeholders.forEach((placeholder, placeholderName) -> {
-			String score = PlaceholderAPI.setPlaceholders(player.getOfflinePlayer(), placeholder);
-			if (isPlaceholderSet(placeholder, score)) scores.put(placeholderName, score);
-		});
+		List<Map.Entry<String, String>> placeholders = new ArrayList<>(config.placeholders.entrySet());
+		String[] values = PlaceholderBatch.setPlaceholders(player.getOfflinePlayer(),
+				placeholders.stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+		for (int i = 0; i < values.length; i++) {
+			String placeholder = placeholders.get(i).getKey();
+			if (isPlaceholderSet(placeholder, values[i])) scores.put(placeholders.get(i).getValue(), values[i]);
+		}
 		
 		return scores;
 	}
 	
 	public @NotNull EntriesScores getStats() {
-		return new EntriesScores(getEntries(), getScores());
+		return collect().runToCompletion();
+	}
+	
+	/**
+	 * Start getting all scores for all players from PlaceholderAPI.
+	 * Alternatively find stored scores from PlaceholderStorage.
+	 * Every step gets the scores of all placeholders for a limited number of
+	 * players, with one PlaceholderAPI call per player. Placeholders that are
+	 * marked as async are resolved on the worker threads instead, the steps
+	 * only hand out the work and merge the results. Players who have not been
+	 * online since the previous collection keep their previous scores.
+	 *
+	 * @return the collection task
+	 */
+	public @NotNull CollectionTask collect() {
+		return new PlaceholderCollection();
+	}
+	
+	private class PlaceholderCollection implements CollectionTask {
+		private final List<CachedOfflinePlayer> players = getPlayersToCollect();
+		private final Iterator<Map.Entry<String, String>> serverPlaceholders;
+		private final List<Map.Entry<String, String>> syncPlaceholders = new ArrayList<>();
+		private final List<Map.Entry<String, String>> asyncPlaceholders = new ArrayList<>();
+		private final Table<String, String, String> values = HashBasedTable.create();
+		private int playerIndex = 0;
+		private boolean done = false;
+		
+		// Batches of async placeholders, for PLAYERS_PER_STEP players each
+		private final Queue<Batch> batches = new ArrayDeque<>();
+		private int batchIndex = 0;
+		// Players of which the async placeholders could not be resolved
+		private final Set<UUID> failedPlayers = new HashSet<>();
+		private boolean waiting = false;
+		private boolean blocking = false;
+		
+		PlaceholderCollection() {
+			List<Map.Entry<String, String>> server = new ArrayList<>();
+			for (Map.Entry<String, String> placeholder : config.placeholders.entrySet()) {
+				// Server placeholders are only one call, keep those on the main thread
+				if (WebStatsConfig.getInstance().serverColumns.contains(placeholder.getValue())) {
+					server.add(placeholder);
+				} else if (asyncExecutor != null && config.asyncPlaceholders.contains(placeholder.getKey())) {
+					asyncPlaceholders.add(placeholder);
+				} else {
+					syncPlaceholders.add(placeholder);
+				}
+			}
+			serverPlaceholders = server.iterator();
+		}
+		
+		@Override
+		public boolean step() {
+			if (done) return true;
+			waiting = false;
+			
+			// First hand out the async work, so that it runs while the main
+			// thread does the rest
+			if (!asyncPlaceholders.isEmpty() && batchIndex < players.size()) {
+				submitBatch();
+				return false;
+			}
+			
+			if (serverPlaceholders.hasNext()) {
+				Map.Entry<String, String> placeholder = serverPlaceholders.next();
+				String score = getPlaceholderForServer(placeholder.getKey());
+				if (score != null) values.put("#server", placeholder.getValue(), score);
+				return false;
+			}
+			
+			if (!syncPlaceholders.isEmpty() && playerIndex < players.size()) {
+				int end = Math.min(playerIndex + PLAYERS_PER_STEP, players.size());
+				for (; playerIndex < end; playerIndex++) {
+					CachedOfflinePlayer player = players.get(playerIndex);
+					if (player.getName() == null) continue;
+					boolean online = player.getOfflinePlayer().isOnline();
+					// Only contains the scores that are not empty
+					values.row(player.getName()).putAll(getPlaceholdersForPlayer(player, syncPlaceholders,
+							online, getStoredScores(player, syncPlaceholders, online)));
+				}
+				return false;
+			}
+			
+			if (!mergeBatch()) return false;
+			putServerName();
+			updateScores();
+			done = true;
+			return true;
+		}
+		
+		private void submitBatch() {
+			int end = Math.min(batchIndex + PLAYERS_PER_STEP, players.size());
+			List<CachedOfflinePlayer> batchPlayers = players.subList(batchIndex, end);
+			batchIndex = end;
+			
+			// Bukkit and the storage are not thread-safe, so the online state
+			// and stored scores are read here on the main thread
+			boolean[] online = new boolean[batchPlayers.size()];
+			String[][] storedScores = new String[batchPlayers.size()][];
+			for (int i = 0; i < batchPlayers.size(); i++) {
+				CachedOfflinePlayer player = batchPlayers.get(i);
+				online[i] = player.getOfflinePlayer().isOnline();
+				storedScores[i] = getStoredScores(player, asyncPlaceholders, online[i]);
+			}
+			
+			batches.add(new Batch(batchPlayers, asyncExecutor.submit(() -> {
+				Table<String, String, String> batchValues = HashBasedTable.create();
+				for (int i = 0; i < batchPlayers.size(); i++) {
+					CachedOfflinePlayer player = batchPlayers.get(i);
+					if (player.getName() == null) continue;
+					batchValues.row(player.getName()).putAll(getPlaceholdersForPlayer(player, asyncPlaceholders,
+							online[i], storedScores[i]));
+				}
+				return batchValues;
+			})));
+		}
+		
+		// Merge the results of the next finished batch. Returns whether all
+		// batches have been merged.
+		private boolean mergeBatch() {
+			Batch batch = batches.peek();
+			if (batch == null) return true;
+			if (!batch.result.isDone() && !blocking) {
+				waiting = true;
+				return false;
+			}
+			batches.remove();
+			try {
+				values.putAll(batch.result.get());
+			} catch (ExecutionException e) {
+				WebStats.logger.log(Level.WARNING, "Could not resolve async placeholders", e.getCause());
+				batch.players.forEach(player -> failedPlayers.add(player.getUniqueId()));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				batch.players.forEach(player -> failedPlayers.add(player.getUniqueId()));
+			}
+			return batches.isEmpty();
+		}
+		
+		@Override
+		public boolean isWaiting() {
+			return waiting;
+		}
+		
+		@Override
+		public @NotNull EntriesScores runToCompletion() {
+			// Nothing else to do on this thread, so wait for the workers
+			blocking = true;
+			return CollectionTask.super.runToCompletion();
+		}
+		
+		private void putServerName() {
+			if (WebStatsConfig.getInstance().serverName != null) {
+				String rawServerName = WebStatsConfig.getInstance().serverName;
+				String serverName = getPlaceholderForServer(rawServerName);
+				values.put("#server", "Player", (serverName != null) ? serverName : rawServerName);
+			}
+		}
+		
+		// Replace the rows of the collected players and the server. Players of
+		// a failed batch keep their previous scores, and are collected again
+		// in the next collection.
+		private void updateScores() {
+			for (CachedOfflinePlayer player : players) {
+				if (failedPlayers.contains(player.getUniqueId())) {
+					markActive(player.getUniqueId());
+					continue;
+				}
+				String previousName = entryNames.remove(player.getUniqueId());
+				if (previousName != null) {
+					scores.row(previousName).clear();
+					entries.remove(previousName);
+				}
+				String name = player.getName();
+				if (name == null) continue;
+				entryNames.put(player.getUniqueId(), name);
+				entries.add(name);
+				scores.row(name).putAll(values.row(name));
+			}
+			scores.row("#server").clear();
+			scores.row("#server").putAll(values.row("#server"));
+			if (failedPlayers.isEmpty()) collectedAll = true;
+		}
+		
+		@Override
+		public @NotNull EntriesScores getResult() {
+			// Not copied: the result is merged into a new snapshot right away,
+			// on the main thread, before the next collection changes it
+			return new EntriesScores(Collections.unmodifiableSet(entries), Tables.unmodifiableTable(scores));
+		}
+	}
+	
+	// The players of an async batch and their resolved scores
+	private static class Batch {
+		final @NotNull List<CachedOfflinePlayer> players;
+		final @NotNull Future<Table<String, String, String>> result;
+		
+		Batch(@NotNull List<CachedOfflinePlayer> players, @NotNull Future<Table<String, String, String>> result) {
+			this.players = players;
+			this.result = result;
+		}
 	}
 	
 	public void disable() {
+		if (asyncExecutor != null) asyncExecutor.shutdownNow();
 		if (storage != null) storage.disable();
 	}
 	
@@ -175,8 +433,11 @@ public class PlaceholderSource {
 		try {
 			// Try to parse UUID
 			UUID uuid = UUID.fromString(playernameOrUUID);
+			markActive(uuid);
 			return storage.deletePlayer(uuid);
 		} catch (IllegalArgumentException ignored) {
+			UUID uuid = WebStats.playerRegistry.getUUID(playernameOrUUID);
+			if (uuid != null) markActive(uuid);
 			return storage.deletePlayer(playernameOrUUID);
 		}
 	}
@@ -198,7 +459,13 @@ public class PlaceholderSource {
 	}
 	
 	public @NotNull String debug() {
-		return (storage != null) ? storage.debug() : "";
+		List<String> lines = new ArrayList<>();
+		if (!caches.isEmpty()) {
+			lines.add("Placeholder caches:");
+			caches.values().forEach(cache -> lines.add("  " + cache.debug()));
+		}
+		if (storage != null) lines.add(storage.debug());
+		return String.join("\n", lines);
 	}
 	
 }
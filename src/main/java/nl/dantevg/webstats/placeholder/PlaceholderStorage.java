@@ -30,11 +30,6 @@ public class PlaceholderStorage {
 		
 		this.placeholderSource = placeholderSource;
 		
-		// Register events
-		Bukkit.getPluginManager().registerEvents(
-				new PlaceholderListener(this, placeholderSource.config.saveOnPluginDisable),
-				WebStats.getPlugin(WebStats.class));
-		
 		if (placeholderSource.config.storeInFile) {
 			storage = getCSVStorage();
 		} else {
@@ -2,6 +2,7 @@ package nl.dantevg.webstats.scoreboard;
 
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
+import nl.dantevg.webstats.CollectionTask;
 import nl.dantevg.webstats.EntriesScores;
 import nl.dantevg.webstats.WebStats;
 import org.bukkit.Bukkit;
@@ -10,11 +11,15 @@ import org.bukkit.scoreboard.Score;
 import org.bukkit.scoreboard.Scoreboard;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 public class ScoreboardSource {
+	private static final int ENTRIES_PER_STEP = 256;
+	
 	private final ScoreboardConfig config;
 	private final Scoreboard scoreboard;
 	
@@ -25,28 +30,6 @@ public class ScoreboardSource {
 		scoreboard = Bukkit.getScoreboardManager().getMainScoreboard();
 	}
 	
-	private @NotNull Set<String> getEntries() {
-		return new HashSet<>(scoreboard.getEntries());
-	}
-	
-	private @NotNull Table<String, String, String> getScores() {
-		Table<String, String, String> values = HashBasedTable.create();
-		for (Objective objective : scoreboard.getObjectives()) {
-			// Filter out objectives that do not appear in the list by either
-			// their internal name or their display name
-			if (!shouldIncludeObjective(objective)) continue;
-			
-			// Get player scores
-			for (String entry : scoreboard.getEntries()) {
-				Score s = objective.getScore(entry);
-				if (s.isScoreSet()) values.put(
-						entry,
-						getObjectiveName(objective),
-						String.valueOf(s.getScore()));
-			}
-		}
-		return values;
-	}
 	
 	private boolean shouldIncludeObjective(Objective objective) {
 		return config.allObjectives
@@ -65,7 +48,59 @@ public class ScoreboardSource {
 	}
 	
 	public @NotNull EntriesScores getStats() {
-		return new EntriesScores(getEntries(), getScores());
+		return collect().runToCompletion();
+	}
+	
+	/**
+	 * Start collecting the scores. Every step gets the scores of one
+	 * objective for a limited number of entries.
+	 *
+	 * @return the collection task
+	 */
+	public @NotNull CollectionTask collect() {
+		return new ScoreboardCollection();
+	}
+	
+	private class ScoreboardCollection implements CollectionTask {
+		private final List<String> entries = new ArrayList<>(scoreboard.getEntries());
+		// Filter out objectives that do not appear in the list by either
+		// their internal name or their display name
+		private final List<Objective> objectives = scoreboard.getObjectives().stream()
+				.filter(ScoreboardSource.this::shouldIncludeObjective)
+				.collect(Collectors.toList());
+		private final Table<String, String, String> values = HashBasedTable.create();
+		private int objectiveIndex = 0;
+		private int entryIndex = 0;
+		
+		@Override
+		public boolean step() {
+			if (objectiveIndex >= objectives.size()) return true;
+			Objective objective = objectives.get(objectiveIndex);
+			
+			try {
+				String objectiveName = getObjectiveName(objective);
+				int end = Math.min(entryIndex + ENTRIES_PER_STEP, entries.size());
+				for (; entryIndex < end; entryIndex++) {
+					String entry = entries.get(entryIndex);
+					Score s = objective.getScore(entry);
+					if (s.isScoreSet()) values.put(entry, objectiveName, String.valueOf(s.getScore()));
+				}
+			} catch (IllegalStateException e) {
+				// Objective was unregistered since the previous step, skip it
+				entryIndex = entries.size();
+			}
+			
+			if (entryIndex >= entries.size()) {
+				objectiveIndex++;
+				entryIndex = 0;
+			}
+			return objectiveIndex >= objectives.size();
+		}
+		
+		@Override
+		public @NotNull EntriesScores getResult() {
+			return new EntriesScores(new HashSet<>(entries), values);
+		}
 	}
 	
 }
@@ -2,6 +2,8 @@ package nl.dantevg.webstats.storage;
 
 import com.google.common.collect.Table;
 import nl.dantevg.webstats.WebStats;
+import nl.dantevg.webstats.metrics.Histogram;
+import nl.dantevg.webstats.metrics.Metrics;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVPrinter;
@@ -32,10 +34,15 @@ public class CSVStorage implements StorageMethod {
 	public CSVStorage(@NotNull String filename,
 	                  @NotNull Map<String, Function<@NotNull String, @Nullable String>> mapper,
 	                  String rowKey) {
-		File datafolder = WebStats.getPlugin(WebStats.class).getDataFolder();
-		file = new File(datafolder, filename);
+		this(new File(WebStats.getPlugin(WebStats.class).getDataFolder(), filename), mapper, rowKey);
+	}
+	
+	public CSVStorage(@NotNull File file,
+	                  @NotNull Map<String, Function<@NotNull String, @Nullable String>> mapper,
+	                  String rowKey) {
+		this.file = file;
 		this.rowKey = rowKey;
-		datafolder.mkdirs();
+		file.getParentFile().mkdirs();
 		this.mapper = mapper;
 	}
 	
@@ -70,7 +77,8 @@ public class CSVStorage implements StorageMethod {
 	@Override
 	public boolean store(@NotNull Table<String, String, String> scores, @NotNull List<String> columns) {
 		if (!ensureFileExists()) return false;
-		try (FileWriter writer = new FileWriter(file, false)) {
+		try (Histogram.Timer ignored = Metrics.STORAGE_SECONDS.time("csv", "save");
+		     FileWriter writer = new FileWriter(file, false)) {
 			if (!columns.contains(rowKey)) {
 				columns = new ArrayList<>(columns);
 				columns.add(0, rowKey);
@@ -105,7 +113,8 @@ public class CSVStorage implements StorageMethod {
 	 */
 	public boolean append(@NotNull Table<String, String, String> scores, @NotNull List<String> columns) {
 		if (!ensureFileExists()) return false;
-		try (FileWriter writer = new FileWriter(file, true)) {
+		try (Histogram.Timer ignored = Metrics.STORAGE_SECONDS.time("csv", "save");
+		     FileWriter writer = new FileWriter(file, true)) {
 			List<String> columnsFromHeader = readColumns();
 			if (columnsFromHeader != null) {
 				CSVPrinter printer = CSVFormat.DEFAULT.print(writer);
@@ -131,7 +140,7 @@ public class CSVStorage implements StorageMethod {
 	@Override
 	public @Nullable Result load() {
 		if (!ensureFileExists()) return null;
-		try {
+		try (Histogram.Timer ignored = Metrics.STORAGE_SECONDS.time("csv", "load")) {
 			CSVParser parser = CSVFormat.DEFAULT.builder()
 					.setHeader().setSkipHeaderRecord(true).build()
 					.parse(new FileReader(file));
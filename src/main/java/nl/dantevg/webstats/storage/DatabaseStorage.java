@@ -4,6 +4,8 @@ import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import nl.dantevg.webstats.WebStats;
 import nl.dantevg.webstats.database.DatabaseConnection;
+import nl.dantevg.webstats.metrics.Histogram;
+import nl.dantevg.webstats.metrics.Metrics;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -44,7 +46,8 @@ public class DatabaseStorage implements StorageMethod {
 		Connection connection = conn.getConnection();
 		if (connection == null) return false;
 		
-		try (PreparedStatement stmt = connection.prepareStatement("REPLACE INTO " + tableName + " VALUES (?, ?, ?);")) {
+		try (Histogram.Timer ignored = Metrics.STORAGE_SECONDS.time("database", "save");
+		     PreparedStatement stmt = connection.prepareStatement("REPLACE INTO " + tableName + " VALUES (?, ?, ?);")) {
 			removeOldColumns(connection, columns);
 			for (Table.Cell<String, String, String> entry : scores.cellSet()) {
 				stmt.setString(1, entry.getRowKey());
@@ -64,7 +67,8 @@ public class DatabaseStorage implements StorageMethod {
 	
 	@Override
 	public @Nullable Result load() {
-		try (PreparedStatement stmt = conn.getConnection()
+		try (Histogram.Timer ignored = Metrics.STORAGE_SECONDS.time("database", "load");
+		     PreparedStatement stmt = conn.getConnection()
 				.prepareStatement("SELECT * FROM " + tableName + ";");
 		     ResultSet resultSet = stmt.executeQuery()) {
 			Table<String, String, String> stats = HashBasedTable.create();
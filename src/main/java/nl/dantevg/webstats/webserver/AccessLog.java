@@ -0,0 +1,266 @@
+package nl.dantevg.webstats.webserver;
+
+import nl.dantevg.webstats.WebStats;
+import nl.dantevg.webstats.metrics.Metrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * Writes a line for every request to a log file. The web server threads only
+ * fill in a preallocated entry in a ring buffer, a single background thread
+ * formats the entries and writes them to the file. When the buffer is full,
+ * requests are left out of the log instead of waiting for the writer.
+ * <p>
+ * The log file is rotated when it gets too large: access.log is moved to
+ * access.log.1, access.log.1 to access.log.2, and so on.
+ */
+public class AccessLog {
+	private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+	private static final int MAX_PATH_LENGTH = 256;
+	
+	private final Entry[] entries;
+	private final int mask;
+	// Sequence number of the next entry to fill in, and of the next to write
+	private final AtomicLong head = new AtomicLong();
+	private volatile long tail = 0;
+	private final LongAdder dropped = new LongAdder();
+	
+	private final @NotNull File file;
+	private final long maxSize;
+	private final int maxFiles;
+	private final @NotNull Thread thread;
+	private volatile boolean running = true;
+	
+	// Only used by the writer thread
+	private final StringBuilder line = new StringBuilder();
+	private @Nullable Writer writer;
+	private long size;
+	private long reportedDropped = 0;
+	private boolean failed = false;
+	
+	/**
+	 * @param file       the file to write to
+	 * @param bufferSize the maximum number of entries waiting to be written
+	 * @param maxSize    the size in bytes after which the file is rotated
+	 * @param maxFiles   the number of rotated files to keep
+	 */
+	public AccessLog(@NotNull File file, int bufferSize, long maxSize, int maxFiles) {
+		this.file = file;
+		this.maxSize = maxSize;
+		this.maxFiles = Math.max(0, maxFiles);
+		
+		// Round up to a power of two, so that the index is a cheap bitmask
+		int capacity = Integer.highestOneBit(Math.max(2, bufferSize) - 1) << 1;
+		entries = new Entry[capacity];
+		for (int i = 0; i < capacity; i++) entries[i] = new Entry();
+		mask = capacity - 1;
+		
+		thread = new Thread(this::run, "WebStats access log");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Add a request to the log. Does not block: when the buffer is full, the
+	 * request is not logged.
+	 *
+	 * @param address  the address of the client
+	 * @param method   the request method
+	 * @param path     the requested path
+	 * @param status   the response status code, or -1 if no response was sent
+	 * @param bytes    the size of the response body
+	 * @param nanos    the time it took to handle the request
+	 * @param encoding the encoding of the response body, or null if the
+	 *                 response was not a cached response
+	 * @param cacheHit whether the response was already cached
+	 */
+	public void log(@NotNull InetAddress address, @NotNull String method, @Nullable String path,
+	                int status, long bytes, long nanos, @Nullable ContentEncoding encoding, boolean cacheHit) {
+		long sequence;
+		do {
+			sequence = head.get();
+			if (sequence - tail >= entries.length) {
+				dropped.increment();
+				Metrics.ACCESS_LOG_DROPPED.increment();
+				return;
+			}
+		} while (!head.compareAndSet(sequence, sequence + 1));
+		
+		Entry entry = entries[(int) (sequence & mask)];
+		entry.time = System.currentTimeMillis();
+		entry.address = address;
+		entry.method = method;
+		entry.path = path;
+		entry.status = status;
+		entry.bytes = bytes;
+		entry.nanos = nanos;
+		entry.encoding = encoding;
+		entry.cacheHit = cacheHit;
+		// Publish the entry to the writer thread
+		entry.sequence = sequence;
+	}
+	
+	/**
+	 * Write the remaining entries and stop the writer thread.
+	 */
+	public void close() {
+		running = false;
+		LockSupport.unpark(thread);
+		try {
+			thread.join(TimeUnit.SECONDS.toMillis(1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void run() {
+		while (true) {
+			long sequence = tail;
+			Entry entry = entries[(int) (sequence & mask)];
+			if (entry.sequence == sequence) {
+				format(entry);
+				entry.clear();
+				tail = sequence + 1;
+				write();
+				continue;
+			}
+			
+			// Nothing to write right now
+			flush();
+			if (!running) break;
+			LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+		}
+		closeWriter();
+	}
+	
+	private void format(@NotNull Entry entry) {
+		line.setLength(0);
+		long droppedNow = dropped.sum();
+		if (droppedNow > reportedDropped) {
+			line.append("# ").append(droppedNow - reportedDropped)
+					.append(" requests were left out, the buffer was full\n");
+			reportedDropped = droppedNow;
+		}
+		
+		line.append(Instant.ofEpochMilli(entry.time)).append(' ')
+				.append(entry.address.getHostAddress()).append(' ')
+				.append('"').append(entry.method).append(' ');
+		appendPath(entry.path);
+		line.append("\" ")
+				.append(entry.status).append(' ')
+				.append(entry.bytes).append(' ')
+				.append(entry.nanos / 1000).append("us ");
+		if (entry.encoding != null) {
+			line.append(entry.encoding.name).append(' ').append(entry.cacheHit ? "hit" : "miss");
+		} else {
+			line.append("- -");
+		}
+		line.append('\n');
+	}
+	
+	// The path is decoded, so escape anything that could break up the line
+	private void appendPath(@Nullable String path) {
+		if (path == null) {
+			line.append('-');
+			return;
+		}
+		int length = Math.min(path.length(), MAX_PATH_LENGTH);
+		for (int i = 0; i < length; i++) {
+			char c = path.charAt(i);
+			if (c < 0x20 || c == 0x7f || c == '"' || c == '\\' || c == ' ') {
+				line.append(String.format("\\x%02x", (int) c));
+			} else {
+				line.append(c);
+			}
+		}
+		if (path.length() > MAX_PATH_LENGTH) line.append("...");
+	}
+	
+	private void write() {
+		try {
+			if (writer == null) open();
+			else if (size >= maxSize) rotate();
+			writer.append(line);
+			// Close enough, paths are mostly ASCII
+			size += line.length();
+			failed = false;
+		} catch (IOException e) {
+			if (!failed) WebStats.logger.log(Level.WARNING, "Could not write to " + file.getName(), e);
+			failed = true;
+			closeWriter();
+		}
+	}
+	
+	private void flush() {
+		if (writer == null) return;
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			if (!failed) WebStats.logger.log(Level.WARNING, "Could not write to " + file.getName(), e);
+			failed = true;
+			closeWriter();
+		}
+	}
+	
+	private void open() throws IOException {
+		File dir = file.getParentFile();
+		if (dir != null) dir.mkdirs();
+		size = file.length();
+		writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+	}
+	
+	private void rotate() throws IOException {
+		closeWriter();
+		String path = file.getPath();
+		if (maxFiles > 0) new File(path + "." + maxFiles).delete();
+		for (int i = maxFiles - 1; i >= 1; i--) {
+			new File(path + "." + i).renameTo(new File(path + "." + (i + 1)));
+		}
+		if (maxFiles == 0 || !file.renameTo(new File(path + ".1"))) file.delete();
+		open();
+	}
+	
+	private void closeWriter() {
+		if (writer == null) return;
+		try {
+			writer.close();
+		} catch (IOException ignored) {
+			// Nothing left to do with it
+		}
+		writer = null;
+	}
+	
+	private static class Entry {
+		// Sequence number of the request in this entry, set last
+		volatile long sequence = -1;
+		
+		long time;
+		InetAddress address;
+		String method;
+		String path;
+		int status;
+		long bytes;
+		long nanos;
+		ContentEncoding encoding;
+		boolean cacheHit;
+		
+		// Do not keep objects alive until the entry is used again
+		void clear() {
+			address = null;
+			method = null;
+			path = null;
+			encoding = null;
+		}
+	}
+	
+}
@@ -0,0 +1,103 @@
+package nl.dantevg.webstats.webserver;
+
+import com.google.common.hash.Hashing;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A response body that has been serialized once, together with its strong
+ * ETag. The ETag is derived from the contents, so two responses with the same
+ * body always have the same ETag. Compressed variants of the body are created
+ * on first use and then kept.
+ */
+public class CachedResponse {
+	public final @NotNull String contentType;
+	public final byte[] body;
+	public final @NotNull String etag;
+	public final boolean compressible;
+	// System.nanoTime() when this response was created
+	public final long createdAt = System.nanoTime();
+	
+	private final Map<ContentEncoding, byte[]> encodedBodies = new EnumMap<>(ContentEncoding.class);
+	
+	public CachedResponse(@NotNull String contentType, byte[] body) {
+		this.contentType = contentType;
+		this.body = body;
+		this.etag = Hashing.murmur3_128().hashBytes(body).toString();
+		this.compressible = isCompressible(contentType);
+	}
+	
+	/**
+	 * Get the body in the requested encoding. If the encoded body would be
+	 * larger than the original, the original body is used for that encoding.
+	 *
+	 * @param encoding the requested encoding
+	 * @return the encoded body
+	 */
+	public synchronized byte[] getBody(@NotNull ContentEncoding encoding) {
+		if (encoding == ContentEncoding.IDENTITY) return body;
+		return encodedBodies.computeIfAbsent(encoding, e -> {
+			byte[] encoded = e.encode(body);
+			return (encoded.length < body.length) ? encoded : body;
+		});
+	}
+	
+	/**
+	 * Get the encoding that the body is actually sent in for a requested
+	 * encoding. This is identity if the encoded body would not be smaller.
+	 *
+	 * @param encoding the requested encoding
+	 * @return the encoding of the body that {@link #getBody} returns
+	 */
+	public @NotNull ContentEncoding getSentEncoding(@NotNull ContentEncoding encoding) {
+		return (getBody(encoding) == body) ? ContentEncoding.IDENTITY : encoding;
+	}
+	
+	/**
+	 * Get the ETag for the representation in an encoding. Strong ETags need
+	 * to be different for each encoding.
+	 *
+	 * @param encoding the encoding the body is sent in, as returned by
+	 *                 {@link #getSentEncoding}
+	 * @return the quoted ETag
+	 */
+	public @NotNull String getETag(@NotNull ContentEncoding encoding) {
+		return (encoding == ContentEncoding.IDENTITY)
+				? "\"" + etag + "\""
+				: "\"" + etag + "-" + encoding.name + "\"";
+	}
+	
+	/**
+	 * Check whether the value of an If-None-Match request header matches the
+	 * ETag of this response in the encoding it would be sent in, meaning the
+	 * client already has this response.
+	 *
+	 * @param ifNoneMatch the value of the If-None-Match header, if present
+	 * @param encoding    the encoding the body is sent in, as returned by
+	 *                    {@link #getSentEncoding}
+	 * @return whether the client's copy is still up-to-date
+	 */
+	public boolean matches(String ifNoneMatch, @NotNull ContentEncoding encoding) {
+		if (ifNoneMatch == null) return false;
+		String etag = getETag(encoding);
+		for (String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			// If-None-Match uses the weak comparison function
+			if (tag.startsWith("W/")) tag = tag.substring(2);
+			if (tag.equals("*") || tag.equals(etag)) return true;
+		}
+		return false;
+	}
+	
+	// Images and other binary formats are already compressed
+	private static boolean isCompressible(@NotNull String contentType) {
+		return contentType.startsWith("text/")
+				|| contentType.equals("application/json")
+				|| contentType.equals("application/msgpack")
+				|| contentType.equals("application/javascript")
+				|| contentType.equals("image/svg+xml");
+	}
+	
+}
@@ -0,0 +1,82 @@
+package nl.dantevg.webstats.webserver;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+public enum ContentEncoding {
+	// In order of preference
+	GZIP("gzip"),
+	DEFLATE("deflate"),
+	IDENTITY("identity");
+	
+	public final @NotNull String name;
+	
+	ContentEncoding(@NotNull String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Compress the data using this encoding.
+	 *
+	 * @param data the data to compress
+	 * @return the compressed data
+	 */
+	public byte[] encode(byte[] data) {
+		if (this == IDENTITY) return data;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4);
+		try (OutputStream output = (this == GZIP)
+				? new GZIPOutputStream(bytes)
+				: new DeflaterOutputStream(bytes)) {
+			output.write(data);
+		} catch (IOException e) {
+			// Cannot happen for a ByteArrayOutputStream
+			throw new RuntimeException(e);
+		}
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Choose the most preferred encoding that the client accepts.
+	 *
+	 * @param acceptEncoding the value of the Accept-Encoding request header
+	 * @return the encoding to use, IDENTITY if the client accepts no other
+	 */
+	public static @NotNull ContentEncoding negotiate(@Nullable String acceptEncoding) {
+		if (acceptEncoding == null) return IDENTITY;
+		
+		boolean gzip = false, deflate = false;
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parts = coding.trim().split(";");
+			if (isRejected(parts)) continue;
+			String name = parts[0].trim().toLowerCase();
+			if (name.equals(GZIP.name) || name.equals("*")) gzip = true;
+			else if (name.equals(DEFLATE.name)) deflate = true;
+		}
+		
+		if (gzip) return GZIP;
+		else if (deflate) return DEFLATE;
+		else return IDENTITY;
+	}
+	
+	// A coding with "q=0" is explicitly not acceptable
+	private static boolean isRejected(@NotNull String[] parts) {
+		for (int i = 1; i < parts.length; i++) {
+			String param = parts[i].trim();
+			if (param.startsWith("q=")) {
+				try {
+					return Double.parseDouble(param.substring(2)) <= 0;
+				} catch (NumberFormatException e) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+}
@@ -0,0 +1,219 @@
+package nl.dantevg.webstats.webserver;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import nl.dantevg.webstats.StatCollector;
+import nl.dantevg.webstats.WebStats;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Server-Sent Events channel which tells subscribed clients when a new stats
+ * snapshot was published. The events only contain the new version and what
+ * changed, clients fetch the changes from /stats-delta.json themselves.
+ * <p>
+ * Subscribed connections are kept open after the request handler returns, so
+ * idle subscribers do not occupy a thread. Events are written by a shared
+ * thread pool which only keeps threads while they are writing. When a client
+ * cannot keep up, only the latest event is kept for it. With the default web
+ * server writing blocks when a client stops reading, so such clients are
+ * disconnected by interrupting their writer thread, which closes the socket.
+ */
+public class EventStream {
+	private static final long HEARTBEAT_INTERVAL_SECONDS = 15;
+	// Clients whose write has not finished within this time stopped reading
+	private static final long WRITE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(HEARTBEAT_INTERVAL_SECONDS);
+	
+	// SSE comment line, ignored by clients but keeps proxies from closing the connection
+	private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+	
+	private final int maxSubscribers;
+	private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setNameFormat("WebStats event stream heartbeat").setDaemon(true).build());
+	// A client that stops reading only blocks its own writer thread
+	private final ExecutorService writeExecutor = Executors.newCachedThreadPool(
+			new ThreadFactoryBuilder().setNameFormat("WebStats event stream %d").setDaemon(true).build());
+	private final Consumer<StatCollector.Snapshot> listener = this::onSnapshot;
+	
+	private @Nullable StatCollector.Snapshot lastSnapshot;
+	private volatile byte[] lastEvent;
+	
+	public EventStream(int maxSubscribers) {
+		this.maxSubscribers = maxSubscribers;
+		WebStats.statCollector.addListener(listener);
+		heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat,
+				HEARTBEAT_INTERVAL_SECONDS, HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * Start sending events to the client. The exchange must not be closed by
+	 * the caller when this returns true.
+	 *
+	 * @param httpConnection the connection to send the events over
+	 * @param exchange       the exchange of the connection
+	 * @return whether the client was subscribed
+	 * @throws IOException
+	 */
+	public boolean subscribe(@NotNull HTTPConnection httpConnection, @NotNull HttpExchange exchange) throws IOException {
+		if (subscribers.size() >= maxSubscribers) {
+			httpConnection.sendEmptyStatus(HttpURLConnection.HTTP_UNAVAILABLE);
+			return false;
+		}
+		
+		Subscriber subscriber = new Subscriber(exchange, httpConnection.startEventStream());
+		subscribers.add(subscriber);
+		
+		// Let the client know the current version right away, so it can
+		// check whether it missed anything
+		byte[] event = lastEvent;
+		if (event == null) {
+			StatCollector.Snapshot snapshot = WebStats.statCollector.getLatest();
+			if (snapshot != null) event = createEvent(snapshot, true, true);
+		}
+		send(subscriber, (event != null) ? event : HEARTBEAT);
+		return true;
+	}
+	
+	public void close() {
+		WebStats.statCollector.removeListener(listener);
+		heartbeatExecutor.shutdownNow();
+		writeExecutor.shutdownNow();
+		for (Subscriber subscriber : subscribers) unsubscribe(subscriber);
+	}
+	
+	public int getNSubscribers() {
+		return subscribers.size();
+	}
+	
+	// Called on the main thread
+	private void onSnapshot(@NotNull StatCollector.Snapshot snapshot) {
+		StatCollector.Snapshot previous = lastSnapshot;
+		lastSnapshot = snapshot;
+		boolean statsChanged = previous == null || previous.stats != snapshot.stats;
+		boolean onlineChanged = previous == null || previous.online != snapshot.online;
+		
+		byte[] event = createEvent(snapshot, statsChanged, onlineChanged);
+		lastEvent = event;
+		for (Subscriber subscriber : subscribers) send(subscriber, event);
+	}
+	
+	private void heartbeat() {
+		long now = System.nanoTime();
+		for (Subscriber subscriber : subscribers) {
+			synchronized (subscriber) {
+				if (subscriber.writer != null && now - subscriber.writeStartedAt > WRITE_TIMEOUT_NANOS) {
+					// This client stopped reading. Interrupting a blocked
+					// write closes the socket, the writer then unsubscribes it
+					WebStats.logger.log(Level.CONFIG, "Disconnecting event stream client "
+							+ subscriber.exchange.getRemoteAddress() + " because it stopped reading");
+					subscriber.writer.interrupt();
+					continue;
+				}
+			}
+			// Only send a heartbeat if no other event is waiting. This also
+			// finds out about clients that were disconnected
+			if (subscriber.pending.compareAndSet(null, HEARTBEAT)) schedule(subscriber);
+		}
+	}
+	
+	private void send(@NotNull Subscriber subscriber, byte[] event) {
+		// Replaces any event which was not written yet, only the latest matters
+		subscriber.pending.set(event);
+		schedule(subscriber);
+	}
+	
+	private void schedule(@NotNull Subscriber subscriber) {
+		if (subscriber.scheduled.compareAndSet(false, true)) {
+			try {
+				writeExecutor.execute(() -> drain(subscriber));
+			} catch (RejectedExecutionException e) {
+				// Shutting down
+				subscriber.scheduled.set(false);
+			}
+		}
+	}
+	
+	private void drain(@NotNull Subscriber subscriber) {
+		boolean failed = false;
+		synchronized (subscriber) {
+			subscriber.writer = Thread.currentThread();
+		}
+		try {
+			byte[] event;
+			while ((event = subscriber.pending.getAndSet(null)) != null) {
+				subscriber.writeStartedAt = System.nanoTime();
+				subscriber.output.write(event);
+				subscriber.output.flush();
+			}
+		} catch (IOException e) {
+			// Client disconnected, or has too much data waiting already
+			failed = true;
+		} finally {
+			synchronized (subscriber) {
+				subscriber.writer = null;
+				// Only interrupted to disconnect this client, so the thread
+				// can write to other clients again
+				if (Thread.interrupted()) failed = true;
+			}
+		}
+		if (failed) {
+			unsubscribe(subscriber);
+			return;
+		}
+		subscriber.scheduled.set(false);
+		
+		// An event may have arrived after the last check but before the
+		// scheduled flag was cleared
+		if (subscriber.pending.get() != null) schedule(subscriber);
+	}
+	
+	private void unsubscribe(@NotNull Subscriber subscriber) {
+		if (subscribers.remove(subscriber)) subscriber.exchange.close();
+	}
+	
+	private static byte[] createEvent(@NotNull StatCollector.Snapshot snapshot, boolean stats, boolean online) {
+		String data = "{\"version\":" + snapshot.version
+				+ ",\"stats\":" + stats
+				+ ",\"online\":" + online + "}";
+		return ("id: " + snapshot.version + "\nevent: update\ndata: " + data + "\n\n")
+				.getBytes(StandardCharsets.UTF_8);
+	}
+	
+	private static class Subscriber {
+		final @NotNull HttpExchange exchange;
+		final @NotNull OutputStream output;
+		
+		// The next event to write, if any
+		final AtomicReference<byte[]> pending = new AtomicReference<>();
+		// Whether a writer thread is going to write the pending event
+		final AtomicBoolean scheduled = new AtomicBoolean();
+		// The thread that is writing to this client, or null when not writing.
+		// Only changed while synchronized on this
+		@Nullable Thread writer;
+		// System.nanoTime() of the start of the current write
+		volatile long writeStartedAt;
+		
+		Subscriber(@NotNull HttpExchange exchange, @NotNull OutputStream output) {
+			this.exchange = exchange;
+			this.output = output;
+		}
+	}
+	
+}
@@ -3,26 +3,78 @@ package nl.dantevg.webstats.webserver;
 import com.google.common.io.ByteStreams;
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
-import nl.dantevg.webstats.WebStats;
 import nl.dantevg.webstats.WebStatsConfig;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.logging.Level;
 
 public class HTTPConnection {
 	private final @NotNull HttpExchange exchange;
+	private final long createdAt = System.nanoTime();
+	
+	// What was sent, for the access log
+	private long bytesSent = 0;
+	private @Nullable ContentEncoding encoding = null;
+	private boolean cacheHit = false;
 	
 	public HTTPConnection(@NotNull HttpExchange exchange) {
 		this.exchange = exchange;
 	}
 	
+	/**
+	 * @return the size of the response body that was sent
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+	
+	/**
+	 * @return the encoding of the cached response that was sent, or null if
+	 * no cached response was sent
+	 */
+	public @Nullable ContentEncoding getEncoding() {
+		return encoding;
+	}
+	
+	/**
+	 * @return whether the cached response that was sent was already cached
+	 * before this request
+	 */
+	public boolean isCacheHit() {
+		return cacheHit;
+	}
+	
+	/**
+	 * Get the value of a query parameter from the request URI.
+	 *
+	 * @param name the name of the parameter
+	 * @return the decoded value, or null if the parameter is not present
+	 */
+	public @Nullable String getQueryParameter(@NotNull String name) {
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query == null) return null;
+		for (String param : query.split("&")) {
+			String[] keyValue = param.split("=", 2);
+			try {
+				if (URLDecoder.decode(keyValue[0], "UTF-8").equals(name)) {
+					return (keyValue.length > 1) ? URLDecoder.decode(keyValue[1], "UTF-8") : "";
+				}
+			} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+				// Ignore malformed parameter
+			}
+		}
+		return null;
+	}
+	
 	private void setHeaders(String contentType) {
 		Headers headers = exchange.getResponseHeaders();
 		headers.add("Access-Control-Allow-Origin", "*");
@@ -55,34 +107,91 @@ public class HTTPConnection {
 		OutputStream output = exchange.getResponseBody();
 		output.write(responseBytes);
 		output.close();
+		bytesSent = responseBytes.length;
 	}
 	
 	public void sendJson(@NotNull String response) throws IOException {
 		send(HttpURLConnection.HTTP_OK, "application/json", response);
 	}
 	
-	public void sendEmptyStatus(int status) throws IOException {
-		setHeaders("text/plain");
-		exchange.sendResponseHeaders(status, -1);
-	}
-	
-	public void sendFile(@NotNull String contentType, @NotNull String path) throws IOException {
-		// Get input stream
-		InputStream input = WebStats.getResourceInputStream(path);
-		if (input == null) {
-			WebStats.logger.log(Level.WARNING, "Could not find resource " + path);
-			sendEmptyStatus(HttpURLConnection.HTTP_NOT_FOUND);
+	/**
+	 * Send a cached response, compressed if the client accepts that. If the
+	 * client already has the same response (its If-None-Match header matches
+	 * the ETag), send a bodiless 304 Not Modified instead.
+	 *
+	 * @param response the response to send
+	 * @throws IOException
+	 */
+	public void sendCached(@NotNull CachedResponse response) throws IOException {
+		ContentEncoding encoding = response.getSentEncoding(getEncoding(response));
+		this.encoding = encoding;
+		cacheHit = response.createdAt < createdAt;
+		
+		setHeaders(response.contentType);
+		Headers headers = exchange.getResponseHeaders();
+		headers.add("ETag", response.getETag(encoding));
+		// Allow storing, but always check whether the response is still current
+		headers.add("Cache-Control", "no-cache");
+		if (response.compressible) headers.add("Vary", "Accept-Encoding");
+		
+		if (response.matches(exchange.getRequestHeaders().getFirst("If-None-Match"), encoding)) {
+			exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
 			return;
 		}
 		
-		setHeaders(contentType);
+		byte[] body = response.getBody(encoding);
+		if (encoding != ContentEncoding.IDENTITY) headers.add("Content-Encoding", encoding.name);
 		
 		// Send headers and data
-		exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, input.available());
+		exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
 		OutputStream output = exchange.getResponseBody();
-		ByteStreams.copy(input, output);
-		input.close();
+		output.write(body);
 		output.close();
+		bytesSent = body.length;
+	}
+	
+	private @NotNull ContentEncoding getEncoding(@NotNull CachedResponse response) {
+		WebStatsConfig config = WebStatsConfig.getInstance();
+		if (!config.compressResponses || !response.compressible
+				|| response.body.length < config.compressionMinSize) {
+			return ContentEncoding.IDENTITY;
+		}
+		return ContentEncoding.negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+	}
+	
+	/**
+	 * Send the headers for a Server-Sent Events stream. The body is sent in
+	 * chunks, as events come in.
+	 *
+	 * @return the stream to write the events to
+	 * @throws IOException
+	 */
+	public @NotNull OutputStream startEventStream() throws IOException {
+		setHeaders("text/event-stream");
+		Headers headers = exchange.getResponseHeaders();
+		headers.add("Cache-Control", "no-cache");
+		// Prevent reverse proxies (nginx) from buffering the events
+		headers.add("X-Accel-Buffering", "no");
+		exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+		return exchange.getResponseBody();
+	}
+	
+	public void sendEmptyStatus(int status) throws IOException {
+		setHeaders("text/plain");
+		exchange.sendResponseHeaders(status, -1);
+	}
+	
+	/**
+	 * Send an empty response with a Retry-After header, for when the client
+	 * should try again later.
+	 *
+	 * @param status     the status code, like 503 Service Unavailable
+	 * @param retryAfter the number of seconds after which to try again
+	 * @throws IOException
+	 */
+	public void sendRetryAfter(int status, long retryAfter) throws IOException {
+		exchange.getResponseHeaders().add("Retry-After", Long.toString(retryAfter));
+		sendEmptyStatus(status);
 	}
 	
 	public void sendServerIcon() throws IOException {
@@ -91,7 +200,7 @@ public class HTTPConnection {
 			setHeaders("image/png");
 			exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, input.available());
 			OutputStream output = exchange.getResponseBody();
-			ByteStreams.copy(input, output);
+			bytesSent = ByteStreams.copy(input, output);
 			output.close();
 		} catch (IOException e) {
 			sendEmptyStatus(HttpURLConnection.HTTP_NOT_FOUND);
@@ -1,20 +1,32 @@
 package nl.dantevg.webstats.webserver;
 
-import com.google.gson.Gson;
+import com.google.common.io.ByteStreams;
+import com.google.common.net.InetAddresses;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
-import nl.dantevg.webstats.StatData;
+import nl.dantevg.webstats.PlayerIndex;
+import nl.dantevg.webstats.StatCollector;
+import nl.dantevg.webstats.StatDelta;
+import nl.dantevg.webstats.StatPage;
 import nl.dantevg.webstats.Stats;
 import nl.dantevg.webstats.WebStats;
 import nl.dantevg.webstats.WebStatsConfig;
+import nl.dantevg.webstats.metrics.Histogram;
+import nl.dantevg.webstats.metrics.Metrics;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.InetAddress;
 import java.net.URLConnection;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.logging.Level;
 
@@ -26,9 +38,40 @@ public class HTTPRequestHandler implements HttpHandler {
 			"an established connection was aborted by the software in your host machine"
 	));
 	
+	private static final Set<String> ENDPOINTS = new HashSet<>(Arrays.asList(
+			"/", "/stats.json", "/stats.msgpack", "/stats-delta.json", "/top.json", "/search.json", "/events", "/online.json",
+			"/tables.json", "/stats.csv", "/metrics"
+	));
+	private static final List<String> PAGE_PARAMETERS = Arrays.asList("table", "sort", "dir", "page", "size");
+	private static final int DEFAULT_PAGE_SIZE = 10;
+	private static final int MAX_PAGE_SIZE = 1000;
+	private static final int MAX_SEARCH_LIMIT = 100;
+	private static final int HTTP_TOO_MANY_REQUESTS = 429;
+	private static final String PLAYER_PREFIX = "/player/";
+	private static final String PLAYER_SUFFIX = ".json";
+	
 	// Map of resource names to their MIME-types
 	private final Map<String, String> resources = new HashMap<>();
 	
+	// Serialized JSON responses, and static files (which change rarely)
+	private final ResponseCache cache = new ResponseCache(64);
+	private final ResponseCache fileCache = new ResponseCache(64);
+	// Single-player responses are small, but there can be many different ones
+	private final ResponseCache playerCache = new ResponseCache(1024);
+	private final ResponseCache searchCache = new ResponseCache(256);
+	
+	private final @Nullable EventStream eventStream;
+	
+	// Addresses allowed to request /metrics, empty to allow all
+	private final Set<InetAddress> metricsAllowedIPs = new HashSet<>();
+	
+	// Reverse proxies which can tell the client address in X-Forwarded-For
+	private final Set<InetAddress> trustedProxies = new HashSet<>();
+	
+	private final RateLimiter rateLimiter = new RateLimiter(WebStatsConfig.getInstance().rateLimits);
+	
+	private final @Nullable AccessLog accessLog;
+	
 	public HTTPRequestHandler() {
 		if (WebStatsConfig.getInstance().serveWebpage) {
 			resources.put("/favicon.png", "image/png");
@@ -43,11 +86,46 @@ public class HTTPRequestHandler implements HttpHandler {
 		}
 		
 		attemptMigrateResources();
+		
+		eventStream = WebStatsConfig.getInstance().serverSentEvents
+				? new EventStream(WebStatsConfig.getInstance().maxEventSubscribers)
+				: null;
+		
+		for (String address : WebStatsConfig.getInstance().metricsAllowedIPs) {
+			try {
+				metricsAllowedIPs.add(InetAddress.getByName(address));
+			} catch (UnknownHostException e) {
+				WebStats.logger.log(Level.WARNING, "Invalid address '" + address + "' in metrics-allowed-ips");
+			}
+		}
+		
+		for (String address : WebStatsConfig.getInstance().trustedProxies) {
+			try {
+				trustedProxies.add(InetAddress.getByName(address));
+			} catch (UnknownHostException e) {
+				WebStats.logger.log(Level.WARNING, "Invalid address '" + address + "' in trusted-proxies");
+			}
+		}
+		
+		WebStatsConfig config = WebStatsConfig.getInstance();
+		accessLog = config.accessLog
+				? new AccessLog(new File(WebStats.getPlugin(WebStats.class).getDataFolder(), "access.log"),
+				config.accessLogBufferSize, config.accessLogMaxSize * 1024L * 1024L, config.accessLogFiles)
+				: null;
 	}
 	
 	public void handle(@NotNull HttpExchange exchange) {
+		boolean keepOpen = false;
+		// Only use known paths as label, to keep the number of metrics limited
+		String path = exchange.getRequestURI().getPath();
+		String endpoint = (path != null && (ENDPOINTS.contains(path) || resources.containsKey(path)))
+				? path : (isPlayerPath(path) ? "/player" : "other");
+		Histogram.Timer timer = Metrics.REQUEST_SECONDS.time(endpoint);
+		long start = System.nanoTime();
+		HTTPConnection httpConnection = new HTTPConnection(exchange);
+		InetAddress client = getClientAddress(exchange);
 		try {
-			handleInternal(exchange);
+			keepOpen = handleInternal(exchange, httpConnection, client);
 		} catch (Exception e) {
 			if (!IGNORED_EXCEPTIONS.contains(e.getMessage().toLowerCase())) {
 				String message = String.format("Caught an exception while handling a request from %s (%s %s)",
@@ -57,58 +135,169 @@ public class HTTPRequestHandler implements HttpHandler {
 				WebStats.logger.log(Level.WARNING, message, e);
 			}
 		} finally {
-			exchange.close();
+			if (!keepOpen) exchange.close();
+			timer.close();
+			Metrics.RESPONSES.increment(endpoint, Integer.toString(exchange.getResponseCode()));
+			if (accessLog != null) {
+				accessLog.log(client, exchange.getRequestMethod(), path, exchange.getResponseCode(),
+						httpConnection.getBytesSent(), System.nanoTime() - start,
+						httpConnection.getEncoding(), httpConnection.isCacheHit());
+			}
 		}
 	}
 	
-	private void handleInternal(@NotNull HttpExchange exchange) throws IOException {
-		HTTPConnection httpConnection = new HTTPConnection(exchange);
+	public void close() {
+		if (eventStream != null) eventStream.close();
+		if (accessLog != null) accessLog.close();
+	}
+	
+	/**
+	 * Handle the request.
+	 *
+	 * @param exchange       the exchange to handle
+	 * @param httpConnection the connection to send the response on
+	 * @param client         the address of the client
+	 * @return whether the exchange was handed off and must be kept open
+	 * @throws IOException
+	 */
+	private boolean handleInternal(@NotNull HttpExchange exchange, @NotNull HTTPConnection httpConnection,
+	                               @NotNull InetAddress client) throws IOException {
+		// Too many requests are waiting already
+		if (RequestExecutor.isRejected()) {
+			httpConnection.sendRetryAfter(HttpURLConnection.HTTP_UNAVAILABLE, 1);
+			return false;
+		}
 		
 		// Only handle GET-requests
 		if (!exchange.getRequestMethod().equals("GET")) {
 			httpConnection.sendEmptyStatus(HttpURLConnection.HTTP_BAD_METHOD);
-			return;
+			return false;
 		}
 		
 		// No URI present
 		String path = exchange.getRequestURI().getPath();
 		if (path == null) {
 			httpConnection.sendEmptyStatus(HttpURLConnection.HTTP_BAD_REQUEST);
-			return;
+			return false;
 		}
 		
 		// Rewrite "/" to "/index.html"
 		if (path.equals("/")) path = "/index.html";
 		
+		RateLimiter.Route route = RateLimiter.Route.of(path);
+		if (route == null) return handlePath(exchange, httpConnection, path, client);
+		
+		long retryAfter = rateLimiter.acquire(route, client);
+		if (retryAfter > 0) {
+			httpConnection.sendRetryAfter(HTTP_TOO_MANY_REQUESTS, retryAfter);
+			return false;
+		}
+		if (!rateLimiter.startRequest(route)) {
+			httpConnection.sendRetryAfter(HttpURLConnection.HTTP_UNAVAILABLE, 1);
+			return false;
+		}
+		try {
+			return handlePath(exchange, httpConnection, path, client);
+		} finally {
+			rateLimiter.endRequest(route);
+		}
+	}
+	
+	private boolean handlePath(@NotNull HttpExchange exchange, @NotNull HTTPConnection httpConnection,
+	                           @NotNull String path, @NotNull InetAddress client) throws IOException {
 		switch (path) {
 			case "/stats.json":
-				InetAddress ip = exchange.getRemoteAddress().getAddress();
 				try {
-					StatData stats = Stats.getAll(ip);
-					httpConnection.sendJson(new Gson().toJson(stats));
+					if (isPageRequest(httpConnection)) {
+						CachedResponse response = getStatsPage(httpConnection);
+						if (response != null) httpConnection.sendCached(response);
+						else httpConnection.sendEmptyStatus(HttpURLConnection.HTTP_BAD_REQUEST);
+					} else {
+						httpConnection.sendCached(getStats(client));
+					}
 				} catch (InterruptedException ignored) {
 					// do nothing
 				}
 				break;
+			case "/stats.msgpack":
+				try {
+					httpConnection.sendCached(getStatsMessagePack(client));
+				} catch (InterruptedException ignored) {
+					// do nothing
+				}
+				break;
+			case "/metrics":
+				if (!WebStatsConfig.getInstance().serveMetrics) {
+					httpConnection.sendEmptyStatus(HttpURLConnection.HTTP_NOT_FOUND);
+				} else if (!isMetricsAllowed(exchange, client)) {
+					httpConnection.sendEmptyStatus(HttpURLConnection.HTTP_FORBIDDEN);
+				} else {
+					httpConnection.send(HttpURLConnection.HTTP_OK, "text/plain; version=0.0.4", Metrics.scrape());
+				}
+				break;
+			case "/top.json":
+				try {
+					CachedResponse response = getTop(httpConnection);
+					if (response != null) httpConnection.sendCached(response);
+					else httpConnection.sendEmptyStatus(HttpURLConnection.HTTP_BAD_REQUEST);
+				} catch (InterruptedException ignored) {
+					// do nothing
+				}
+				break;
+			case "/search.json":
+				try {
+					CachedResponse response = getSearch(httpConnection);
+					if (response != null) httpConnection.sendCached(response);
+					else httpConnection.sendEmptyStatus(HttpURLConnection.HTTP_BAD_REQUEST);
+				} catch (InterruptedException ignored) {
+					// do nothing
+				}
+				break;
+			case "/stats-delta.json":
+				try {
+					httpConnection.sendCached(getStatsDelta(client,
+							httpConnection.getQueryParameter("since")));
+				} catch (InterruptedException ignored) {
+					// do nothing
+				}
+				break;
+			case "/events":
+				if (eventStream != null) return eventStream.subscribe(httpConnection, exchange);
+				httpConnection.sendEmptyStatus(HttpURLConnection.HTTP_NOT_FOUND);
+				break;
 			case "/online.json":
-				httpConnection.sendJson(new Gson().toJson(Stats.getOnline()));
+				try {
+					httpConnection.sendCached(getOnline());
+				} catch (InterruptedException ignored) {
+					// do nothing
+				}
 				break;
 			case "/tables.json":
-				httpConnection.sendJson(new Gson().toJson(WebStatsConfig.getInstance().tables));
+				httpConnection.sendCached(cache.getJson("/tables.json",
+						() -> WebStatsConfig.getInstance().tables));
 				break;
 			case "/stats.csv":
 				if (new File(WebStats.getPlugin(WebStats.class).getDataFolder(), "stats.csv").exists()) {
-					httpConnection.sendFile("text/csv", "stats.csv");
+					sendFile(httpConnection, "text/csv", "stats.csv");
 				} else {
 					httpConnection.sendEmptyStatus(HttpURLConnection.HTTP_NOT_FOUND);
 				}
 				break;
 			default:
-				if (resources.containsKey(path)) {
+				if (isPlayerPath(path)) {
+					try {
+						CachedResponse response = getPlayer(path.substring(PLAYER_PREFIX.length(),
+								path.length() - PLAYER_SUFFIX.length()));
+						if (response != null) httpConnection.sendCached(response);
+						else httpConnection.sendEmptyStatus(HttpURLConnection.HTTP_NOT_FOUND);
+					} catch (InterruptedException ignored) {
+						// do nothing
+					}
+				} else if (resources.containsKey(path)) {
 					if (path.equals("/server-icon.png")) {
 						httpConnection.sendServerIcon();
 					} else {
-						httpConnection.sendFile(resources.get(path), "web" + path);
+						sendFile(httpConnection, resources.get(path), "web" + path);
 					}
 				} else {
 					WebStats.logger.log(Level.CONFIG, "Got request for " + path + ", not found");
@@ -116,6 +305,314 @@ public class HTTPRequestHandler implements HttpHandler {
 				}
 				break;
 		}
+		return false;
+	}
+	
+	private void sendFile(@NotNull HTTPConnection httpConnection, @NotNull String contentType, @NotNull String path)
+			throws IOException {
+		// Files in the plugin folder can be changed while the server is
+		// running, so include the modification time in the key
+		File file = new File(WebStats.getPlugin(WebStats.class).getDataFolder(), path);
+		String key = path + " " + (file.isFile() ? file.lastModified() + " " + file.length() : "jar");
+		
+		try {
+			httpConnection.sendCached(fileCache.get(key, contentType, () -> {
+				try (InputStream input = WebStats.getResourceInputStream(path)) {
+					if (input == null) throw new FileNotFoundException(path);
+					return ByteStreams.toByteArray(input);
+				}
+			}));
+		} catch (FileNotFoundException e) {
+			WebStats.logger.log(Level.WARNING, "Could not find resource " + path);
+			httpConnection.sendEmptyStatus(HttpURLConnection.HTTP_NOT_FOUND);
+		}
+	}
+	
+	private @NotNull CachedResponse getStats(@NotNull InetAddress ip) throws InterruptedException {
+		StatCollector.Snapshot snapshot = WebStats.statCollector.awaitSnapshot();
+		
+		// The response also contains the names of the players that were
+		// online from this IP address and the skins, so use those in the key
+		Set<String> playernames = new TreeSet<>(Stats.getPlayernames(ip));
+		long skinsVersion = (WebStats.skinsRestorerHelper != null)
+				? WebStats.skinsRestorerHelper.getVersion() : -1;
+		String key = "/stats.json " + snapshot.version + " " + skinsVersion + " " + playernames;
+		
+		return cache.getJson(key, () -> Stats.getAll(snapshot, playernames));
+	}
+	
+	/**
+	 * Get the same stats as {@link #getStats}, in the more compact
+	 * MessagePack format.
+	 */
+	private @NotNull CachedResponse getStatsMessagePack(@NotNull InetAddress ip) throws InterruptedException, IOException {
+		StatCollector.Snapshot snapshot = WebStats.statCollector.awaitSnapshot();
+		Set<String> playernames = new TreeSet<>(Stats.getPlayernames(ip));
+		long skinsVersion = (WebStats.skinsRestorerHelper != null)
+				? WebStats.skinsRestorerHelper.getVersion() : -1;
+		String key = "/stats.msgpack " + snapshot.version + " " + skinsVersion + " " + playernames;
+		
+		return cache.get(key, "application/msgpack", () -> Stats.getAll(snapshot, playernames).toMessagePack());
+	}
+	
+	private static boolean isPlayerPath(@Nullable String path) {
+		return path != null && path.startsWith(PLAYER_PREFIX) && path.endsWith(PLAYER_SUFFIX)
+				&& path.length() > PLAYER_PREFIX.length() + PLAYER_SUFFIX.length();
+	}
+	
+	/**
+	 * Get the stats of a single player: the scores, the rank in every column,
+	 * whether the player is online and the skin ID.
+	 *
+	 * @param nameOrUUID the name or UUID of the player
+	 * @return the response, or null if there is no such player
+	 */
+	private @Nullable CachedResponse getPlayer(@NotNull String nameOrUUID) throws InterruptedException {
+		StatCollector.Snapshot snapshot = WebStats.statCollector.awaitSnapshot();
+		PlayerIndex index = snapshot.stats.getPlayerIndex();
+		String entry = index.find(nameOrUUID);
+		if (entry == null) return null;
+		
+		long skinsVersion = (WebStats.skinsRestorerHelper != null)
+				? WebStats.skinsRestorerHelper.getVersion() : -1;
+		String key = "/player " + snapshot.version + " " + skinsVersion + " " + entry;
+		return playerCache.getJson(key, () -> {
+			UUID uuid = index.getUUID(entry);
+			Object online = snapshot.online.get(entry);
+			Map<String, Object> player = new LinkedHashMap<>();
+			player.put("version", snapshot.version);
+			player.put("name", entry);
+			player.put("uuid", uuid);
+			player.put("status", (online == null) ? "offline" : ("afk".equals(online) ? "afk" : "online"));
+			player.put("scores", index.getScores(entry));
+			player.put("ranks", index.getRanks(entry));
+			if (WebStats.skinsRestorerHelper != null && uuid != null) {
+				player.put("skin", WebStats.skinsRestorerHelper.getSkinID(uuid, entry));
+			}
+			return player;
+		});
+	}
+	
+	private boolean isMetricsAllowed(@NotNull HttpExchange exchange, @NotNull InetAddress client) {
+		if (!metricsAllowedIPs.isEmpty() && !metricsAllowedIPs.contains(client)) return false;
+		
+		String token = WebStatsConfig.getInstance().metricsToken;
+		if (token == null || token.isEmpty()) return true;
+		String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		// Compare in constant time, to not leak the token through timing
+		return authorization != null && MessageDigest.isEqual(
+				authorization.getBytes(StandardCharsets.UTF_8),
+				("Bearer " + token).getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Get the address of the client. For requests from a trusted proxy, this
+	 * is the last address in X-Forwarded-For that is not a trusted proxy.
+	 */
+	private @NotNull InetAddress getClientAddress(@NotNull HttpExchange exchange) {
+		InetAddress address = exchange.getRemoteAddress().getAddress();
+		if (!trustedProxies.contains(address)) return address;
+		List<String> headers = exchange.getRequestHeaders().get("X-Forwarded-For");
+		if (headers == null) return address;
+		
+		// Multiple headers are the same as a single comma-separated list
+		List<String> forwarded = new ArrayList<>();
+		for (String header : headers) {
+			for (String hop : header.split(",")) forwarded.add(hop.trim());
+		}
+		
+		// Go back from the proxy closest to this server, because the client
+		// can put anything at the start of the list
+		for (int i = forwarded.size() - 1; i >= 0; i--) {
+			// Do not look up host names, only accept IP addresses
+			if (!InetAddresses.isInetAddress(forwarded.get(i))) break;
+			address = InetAddresses.forString(forwarded.get(i));
+			if (!trustedProxies.contains(address)) break;
+		}
+		return address;
+	}
+	
+	private static boolean isPageRequest(@NotNull HTTPConnection httpConnection) {
+		for (String param : PAGE_PARAMETERS) {
+			if (httpConnection.getQueryParameter(param) != null) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Get one sorted page of a table, as requested by the query parameters
+	 * {@code table} (index in the config), {@code sort} ({@code Player} or a column),
+	 * {@code dir} ({@code ascending} or {@code descending}), {@code page}
+	 * (starting at 1) and {@code size}. Missing parameters take the defaults
+	 * of the table from the config.
+	 *
+	 * @return the page, or null if the parameters were invalid
+	 */
+	private @Nullable CachedResponse getStatsPage(@NotNull HTTPConnection httpConnection)
+			throws InterruptedException {
+		List<WebStatsConfig.TableConfig> tables = WebStatsConfig.getInstance().tables;
+		int tableIndex, page, size;
+		try {
+			tableIndex = parseInt(httpConnection.getQueryParameter("table"), 0);
+			page = parseInt(httpConnection.getQueryParameter("page"), 1);
+			size = parseInt(httpConnection.getQueryParameter("size"), DEFAULT_PAGE_SIZE);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		if (page < 1 || size < 1 || size > MAX_PAGE_SIZE) return null;
+		
+		WebStatsConfig.TableConfig table = null;
+		if (tables != null && !tables.isEmpty()) {
+			if (tableIndex < 0 || tableIndex >= tables.size()) return null;
+			table = tables.get(tableIndex);
+		} else if (tableIndex != 0) {
+			return null;
+		}
+		
+		String sortParam = httpConnection.getQueryParameter("sort");
+		String sortColumn = (sortParam != null) ? sortParam
+				: (table != null && table.sortColumn != null) ? table.sortColumn : "Player";
+		
+		WebStatsConfig.SortDirection direction = parseDirection(httpConnection.getQueryParameter("dir"),
+				(table != null && table.sortDirection != null)
+						? table.sortDirection : WebStatsConfig.SortDirection.ASCENDING);
+		if (direction == null) return null;
+		
+		StatCollector.Snapshot snapshot = WebStats.statCollector.awaitSnapshot();
+		if (sortParam != null && !sortParam.equals("Player")
+				&& !snapshot.stats.scores.containsColumn(sortParam)) {
+			return null;
+		}
+		List<String> columns = (table != null) ? table.columns : null;
+		long skinsVersion = (WebStats.skinsRestorerHelper != null)
+				? WebStats.skinsRestorerHelper.getVersion() : -1;
+		String key = "/stats.json " + snapshot.version + " " + skinsVersion + " " + tableIndex
+				+ " " + direction + " " + page + " " + size + " " + sortColumn;
+		
+		return cache.getJson(key, () ->
+				StatPage.of(snapshot, columns, sortColumn, direction, page, size));
+	}
+	
+	/**
+	 * Get the best entries in a column, as requested by the query parameters
+	 * {@code column}, {@code n} (number of entries) and {@code dir}
+	 * ({@code descending} by default, for the highest scores first).
+	 *
+	 * @return the leaderboard, or null if the parameters were invalid
+	 */
+	private @Nullable CachedResponse getTop(@NotNull HTTPConnection httpConnection) throws InterruptedException {
+		String column = httpConnection.getQueryParameter("column");
+		if (column == null) return null;
+		int n;
+		try {
+			n = parseInt(httpConnection.getQueryParameter("n"), DEFAULT_PAGE_SIZE);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		if (n < 1 || n > MAX_PAGE_SIZE) return null;
+		WebStatsConfig.SortDirection direction = parseDirection(httpConnection.getQueryParameter("dir"),
+				WebStatsConfig.SortDirection.DESCENDING);
+		if (direction == null) return null;
+		
+		StatCollector.Snapshot snapshot = WebStats.statCollector.awaitSnapshot();
+		String key = "/top.json " + snapshot.version + " " + direction + " " + n + " " + column;
+		return cache.getJson(key, () -> {
+			Map<String, Object> top = new LinkedHashMap<>();
+			top.put("version", snapshot.version);
+			top.put("column", column);
+			top.put("sortDirection", direction);
+			top.put("entries", WebStats.statCollector.getLeaderboards().getTop(snapshot, column, direction, n));
+			return top;
+		});
+	}
+	
+	/**
+	 * Get the entries whose name starts with the query, ignoring case, with
+	 * their rank in every column.
+	 *
+	 * @return the response, or null if the query or limit is invalid
+	 */
+	private @Nullable CachedResponse getSearch(@NotNull HTTPConnection httpConnection) throws InterruptedException {
+		String query = httpConnection.getQueryParameter("q");
+		if (query == null) return null;
+		int limit;
+		try {
+			limit = parseInt(httpConnection.getQueryParameter("limit"), DEFAULT_PAGE_SIZE);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		if (limit < 1 || limit > MAX_SEARCH_LIMIT) return null;
+		
+		StatCollector.Snapshot snapshot = WebStats.statCollector.awaitSnapshot();
+		String key = "/search.json " + snapshot.version + " " + limit + " " + query.toLowerCase(Locale.ROOT);
+		return searchCache.getJson(key, () -> {
+			PlayerIndex index = snapshot.stats.getPlayerIndex();
+			List<Map<String, Object>> entries = new ArrayList<>();
+			for (String name : WebStats.statCollector.getSearchIndex().search(snapshot, query, limit)) {
+				Map<String, Object> entry = new LinkedHashMap<>();
+				entry.put("name", name);
+				entry.put("ranks", index.getRanks(name));
+				entries.add(entry);
+			}
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("version", snapshot.version);
+			result.put("entries", entries);
+			return result;
+		});
+	}
+	
+	private static int parseInt(@Nullable String value, int def) throws NumberFormatException {
+		return (value != null) ? Integer.parseInt(value) : def;
+	}
+	
+	private static @Nullable WebStatsConfig.SortDirection parseDirection(@Nullable String value,
+	                                                                     @NotNull WebStatsConfig.SortDirection def) {
+		if (value == null) return def;
+		if (value.equalsIgnoreCase("asc") || value.equalsIgnoreCase("ascending")) {
+			return WebStatsConfig.SortDirection.ASCENDING;
+		} else if (value.equalsIgnoreCase("desc") || value.equalsIgnoreCase("descending")) {
+			return WebStatsConfig.SortDirection.DESCENDING;
+		}
+		return null;
+	}
+	
+	/**
+	 * Get the changes since the given version. When that version is no longer
+	 * available, send all stats instead (like /stats.json).
+	 */
+	private @NotNull CachedResponse getStatsDelta(@NotNull InetAddress ip, @Nullable String sinceParam)
+			throws InterruptedException {
+		StatCollector.Snapshot snapshot = WebStats.statCollector.awaitSnapshot();
+		StatCollector.Snapshot since = null;
+		try {
+			if (sinceParam != null) since = WebStats.statCollector.getSnapshot(Long.parseLong(sinceParam));
+		} catch (NumberFormatException e) {
+			// Send all stats
+		}
+		if (since == null || since.version > snapshot.version) return getStats(ip);
+		
+		StatCollector.Snapshot from = since;
+		Set<String> playernames = new TreeSet<>(Stats.getPlayernames(ip));
+		long skinsVersion = (WebStats.skinsRestorerHelper != null)
+				? WebStats.skinsRestorerHelper.getVersion() : -1;
+		// The client has the skins of at least the older snapshot, only send
+		// them again when any skin changed since then
+		boolean skinsChanged = skinsVersion != from.skinsVersion;
+		String key = "/stats-delta.json " + from.version + " " + snapshot.version + " "
+				+ (skinsChanged ? skinsVersion : "-") + " " + playernames;
+		
+		return cache.getJson(key, () -> {
+			StatDelta delta = StatDelta.between(from, snapshot);
+			delta.playernames = playernames;
+			if (skinsChanged) delta.skins = WebStats.skinsRestorerHelper.getSkinIDsForPlayers(snapshot.stats.entries);
+			return delta;
+		});
+	}
+	
+	private @NotNull CachedResponse getOnline() throws InterruptedException {
+		StatCollector.Snapshot snapshot = WebStats.statCollector.awaitSnapshot();
+		return cache.getJson("/online.json " + snapshot.version,
+				() -> snapshot.online);
 	}
 	
 	private void attemptMigrateResources() {
@@ -1,5 +1,6 @@
 package nl.dantevg.webstats.webserver;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sun.net.httpserver.HttpsConfigurator;
 import com.sun.net.httpserver.HttpsParameters;
 import com.sun.net.httpserver.HttpsServer;
@@ -7,11 +8,16 @@ import nl.dantevg.webstats.WebStats;
 import nl.dantevg.webstats.WebStatsConfig;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.InvalidConfigurationException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.net.ssl.*;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.security.*;
+import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.text.DateFormat;
@@ -19,13 +25,25 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.Period;
 import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
-public class HTTPSWebServer extends WebServer<HttpsServer> {
+public class HTTPSWebServer extends JDKWebServer<HttpsServer> {
 	private static final String KEYSTORE_TYPE = "PKCS12";
 	private static final String MANAGER_TYPE = "PKIX";
+	private static final long KEYSTORE_CHECK_INTERVAL_SECONDS = 10;
 	
 	private final HTTPSConfig config;
+	private final ReloadableSSLContext sslContext;
+	
+	private final File keystoreFile;
+	private @Nullable ScheduledExecutorService keystoreWatcher;
+	// Modification time of the keystore that is in use, and of the
+	// keystore that was last seen but may still be being written
+	private long keystoreModified;
+	private long pendingKeystoreModified;
 	
 	public HTTPSWebServer()
 			throws IOException, NoSuchAlgorithmException, KeyStoreException,
@@ -34,25 +52,84 @@ public class HTTPSWebServer extends WebServer<HttpsServer> {
 		
 		config = HTTPSConfig.getInstance(true);
 		port = WebStatsConfig.getInstance().port;
-		server = HttpsServer.create(new InetSocketAddress(port), 0);
+		server = HttpsServer.create(new InetSocketAddress(port), WebStatsConfig.getInstance().webServerBacklog);
 		
 		// https://stackoverflow.com/a/2323188
 		
-		SSLContext sslContext = SSLContext.getInstance("TLS");
-		KeyStore keyStore = HTTPSWebServer.getKeyStore(config.keystoreFile, config.keystorePassword);
-		checkCertificateExpiration(keyStore);
-		sslContext.init(HTTPSWebServer.getKeyManagers(keyStore, config.keystorePassword),
-				HTTPSWebServer.getTrustManagers(keyStore), null);
+		keystoreFile = new File(WebStats.getPlugin(WebStats.class).getDataFolder(), config.keystoreFile);
+		keystoreModified = pendingKeystoreModified = keystoreFile.lastModified();
+		sslContext = new ReloadableSSLContext(createSSLContext());
 		server.setHttpsConfigurator(new HttpsConfigurator(sslContext) {
 			public void configure(HttpsParameters params) {
 				SSLContext ctx = getSSLContext();
 				params.setSSLParameters(ctx.getDefaultSSLParameters());
 			}
 		});
+		
+		if (config.reloadKeystore) {
+			keystoreWatcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+					.setNameFormat("WebStats keystore watcher").setDaemon(true).build());
+			keystoreWatcher.scheduleWithFixedDelay(this::checkKeystore,
+					KEYSTORE_CHECK_INTERVAL_SECONDS, KEYSTORE_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		}
+	}
+	
+	@Override
+	protected void stopServer(int i) {
+		if (keystoreWatcher != null) keystoreWatcher.shutdownNow();
+		super.stopServer(i);
+	}
+	
+	private @NotNull SSLContext createSSLContext()
+			throws IOException, NoSuchAlgorithmException, KeyStoreException,
+			CertificateException, UnrecoverableKeyException, KeyManagementException {
+		SSLContext sslContext = SSLContext.getInstance("TLS");
+		KeyStore keyStore = HTTPSWebServer.getKeyStore(config.keystoreFile, config.keystorePassword);
+		checkCertificateExpiration(keyStore);
+		sslContext.init(HTTPSWebServer.getKeyManagers(keyStore, config.keystorePassword),
+				HTTPSWebServer.getTrustManagers(keyStore), null);
+		
+		// Remembered sessions let clients that connect again (like web pages
+		// that keep asking for new stats) skip the full handshake
+		SSLSessionContext sessionContext = sslContext.getServerSessionContext();
+		sessionContext.setSessionCacheSize(config.sessionCacheSize);
+		sessionContext.setSessionTimeout(config.sessionTimeout);
+		return sslContext;
+	}
+	
+	/**
+	 * Switch to the new certificate when the keystore file has changed, so
+	 * that a renewed certificate is used without restarting the web server.
+	 */
+	private void checkKeystore() {
+		long modified = keystoreFile.lastModified();
+		if (modified == keystoreModified) return;
+		
+		// Wait until the file stays the same for one interval, so that it is
+		// not read while it is still being written
+		if (modified != pendingKeystoreModified) {
+			pendingKeystoreModified = modified;
+			return;
+		}
+		
+		keystoreModified = modified;
+		try {
+			sslContext.set(createSSLContext());
+			WebStats.logger.log(Level.INFO, "Reloaded keystore " + config.keystoreFile);
+		} catch (IOException | GeneralSecurityException | RuntimeException e) {
+			// Runtime exceptions are caught as well, they would cancel all
+			// further checks
+			WebStats.logger.log(Level.WARNING, "Could not reload keystore " + config.keystoreFile
+					+ ", keeping the old certificate", e);
+		}
 	}
 	
 	private void checkCertificateExpiration(KeyStore keyStore) throws KeyStoreException {
-		Date expiration = ((X509Certificate) keyStore.getCertificate("webstats")).getNotAfter();
+		Certificate certificate = keyStore.getCertificate("webstats");
+		if (!(certificate instanceof X509Certificate)) {
+			throw new KeyStoreException("No certificate with alias 'webstats' in keystore " + config.keystoreFile);
+		}
+		Date expiration = ((X509Certificate) certificate).getNotAfter();
 		Date now = Date.from(Instant.now());
 		Date oneWeekFromNow = Date.from(Instant.now().plus(Period.ofDays(7)));
 		DateFormat formatter = DateFormat.getDateInstance();
@@ -76,7 +153,9 @@ public class HTTPSWebServer extends WebServer<HttpsServer> {
 	private static KeyStore getKeyStore(String keystoreFile, String keystorePassword)
 			throws KeyStoreException, CertificateException, NoSuchAlgorithmException, IOException {
 		KeyStore keyStore = KeyStore.getInstance(KEYSTORE_TYPE);
-		keyStore.load(WebStats.getResourceInputStream(keystoreFile), keystorePassword.toCharArray());
+		try (InputStream input = WebStats.getResourceInputStream(keystoreFile)) {
+			keyStore.load(input, keystorePassword.toCharArray());
+		}
 		return keyStore;
 	}
 	
@@ -101,6 +180,9 @@ class HTTPSConfig {
 	
 	public final String keystoreFile;
 	public final String keystorePassword;
+	public final int sessionCacheSize;
+	public final int sessionTimeout;
+	public final boolean reloadKeystore;
 	
 	private HTTPSConfig() throws InvalidConfigurationException {
 		ConfigurationSection section = WebStats.config.getConfigurationSection("https");
@@ -113,6 +195,10 @@ class HTTPSConfig {
 		if (keystoreFile == null || keystorePassword == null) {
 			throw new InvalidConfigurationException("Invalid configuration: keystore-file and keystore-password are required for HTTPS. If you do not want HTTPS, comment it out.");
 		}
+		
+		sessionCacheSize = section.getInt("session-cache-size", 20480);
+		sessionTimeout = section.getInt("session-timeout", 86400);
+		reloadKeystore = section.getBoolean("reload-keystore", true);
 	}
 	
 	public static HTTPSConfig getInstance(boolean forceNew) throws InvalidConfigurationException {
@@ -7,10 +7,10 @@ import nl.dantevg.webstats.WebStatsConfig;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 
-public class HTTPWebServer extends WebServer<HttpServer> {
+public class HTTPWebServer extends JDKWebServer<HttpServer> {
 	public HTTPWebServer() throws IOException {
 		port = WebStatsConfig.getInstance().port;
-		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server = HttpServer.create(new InetSocketAddress(port), WebStatsConfig.getInstance().webServerBacklog);
 	}
 	
 }
@@ -0,0 +1,22 @@
+package nl.dantevg.webstats.webserver;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Web server using the HTTP server built into Java.
+ */
+public abstract class JDKWebServer<T extends HttpServer> extends WebServer {
+	protected T server;
+	
+	@Override
+	protected void startServer() {
+		server.createContext("/", handler);
+		server.setExecutor(executor);
+		server.start();
+	}
+	
+	@Override
+	protected void stopServer(int i) {
+		server.stop(i);
+	}
+}
@@ -0,0 +1,272 @@
+package nl.dantevg.webstats.webserver;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single request on a {@link NIOWebServer} connection, so that it can be
+ * handled by the same {@link HTTPRequestHandler} as the default web server.
+ * The response is buffered until it is flushed or closed, and then handed to
+ * the selector thread to send.
+ */
+class NIOExchange extends HttpExchange {
+	private enum BodyType {NONE, FIXED, CHUNKED, UNTIL_CLOSE}
+	
+	private final @NotNull NIOWebServer.Connection connection;
+	private final @NotNull String method;
+	private final @NotNull URI uri;
+	private final @NotNull String protocol;
+	private final @NotNull Headers requestHeaders;
+	private final @NotNull Headers responseHeaders = new Headers();
+	private final Map<String, Object> attributes = new HashMap<>();
+	
+	private InputStream requestBody;
+	private OutputStream responseBody = new ResponseBody();
+	
+	private boolean keepAlive;
+	private int responseCode = -1;
+	private BodyType bodyType;
+	private boolean closed = false;
+	
+	NIOExchange(@NotNull NIOWebServer.Connection connection, @NotNull String method, @NotNull URI uri,
+	            @NotNull String protocol, @NotNull Headers requestHeaders, byte[] body, boolean keepAlive) {
+		this.connection = connection;
+		this.method = method;
+		this.uri = uri;
+		this.protocol = protocol;
+		this.requestHeaders = requestHeaders;
+		this.requestBody = new ByteArrayInputStream(body);
+		this.keepAlive = keepAlive;
+	}
+	
+	@Override
+	public Headers getRequestHeaders() {
+		return requestHeaders;
+	}
+	
+	@Override
+	public Headers getResponseHeaders() {
+		return responseHeaders;
+	}
+	
+	@Override
+	public URI getRequestURI() {
+		return uri;
+	}
+	
+	@Override
+	public String getRequestMethod() {
+		return method;
+	}
+	
+	// There are no contexts, all requests go to the same handler
+	@Override
+	public HttpContext getHttpContext() {
+		return null;
+	}
+	
+	@Override
+	public synchronized void close() {
+		if (closed) return;
+		closed = true;
+		if (responseCode == -1) {
+			// No response was sent, there is no way to tell the client
+			keepAlive = false;
+		} else {
+			try {
+				((ResponseBody) responseBody).finish();
+			} catch (IOException e) {
+				keepAlive = false;
+			}
+		}
+		connection.finish(keepAlive);
+	}
+	
+	@Override
+	public InputStream getRequestBody() {
+		return requestBody;
+	}
+	
+	@Override
+	public OutputStream getResponseBody() {
+		return responseBody;
+	}
+	
+	@Override
+	public synchronized void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+		if (responseCode != -1) throw new IOException("Headers already sent");
+		responseCode = rCode;
+		
+		if (rCode == HttpURLConnection.HTTP_NOT_MODIFIED || rCode == HttpURLConnection.HTTP_NO_CONTENT
+				|| method.equals("HEAD")) {
+			bodyType = BodyType.NONE;
+		} else if (responseLength == -1) {
+			bodyType = BodyType.NONE;
+			responseHeaders.set("Content-Length", "0");
+		} else if (responseLength > 0) {
+			bodyType = BodyType.FIXED;
+			responseHeaders.set("Content-Length", Long.toString(responseLength));
+		} else if (protocol.equals("HTTP/1.1")) {
+			bodyType = BodyType.CHUNKED;
+			responseHeaders.set("Transfer-Encoding", "chunked");
+		} else {
+			// HTTP/1.0 clients do not know chunked encoding
+			bodyType = BodyType.UNTIL_CLOSE;
+			keepAlive = false;
+		}
+		if (!keepAlive) responseHeaders.set("Connection", "close");
+		responseHeaders.set("Date", DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC)));
+		
+		StringBuilder head = new StringBuilder("HTTP/1.1 ").append(rCode).append(' ')
+				.append(getReasonPhrase(rCode)).append("\r\n");
+		for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+			for (String value : header.getValue()) {
+				head.append(header.getKey()).append(": ").append(value).append("\r\n");
+			}
+		}
+		head.append("\r\n");
+		connection.send(ByteBuffer.wrap(head.toString().getBytes(StandardCharsets.ISO_8859_1)));
+	}
+	
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return connection.remoteAddress;
+	}
+	
+	@Override
+	public int getResponseCode() {
+		return responseCode;
+	}
+	
+	@Override
+	public InetSocketAddress getLocalAddress() {
+		return connection.localAddress;
+	}
+	
+	@Override
+	public String getProtocol() {
+		return protocol;
+	}
+	
+	@Override
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+	
+	@Override
+	public void setAttribute(String name, Object value) {
+		attributes.put(name, value);
+	}
+	
+	@Override
+	public void setStreams(InputStream i, OutputStream o) {
+		if (i != null) requestBody = i;
+		if (o != null) responseBody = o;
+	}
+	
+	@Override
+	public HttpPrincipal getPrincipal() {
+		return null;
+	}
+	
+	private static @NotNull String getReasonPhrase(int code) {
+		switch (code) {
+			case HttpURLConnection.HTTP_OK: return "OK";
+			case HttpURLConnection.HTTP_NO_CONTENT: return "No Content";
+			case HttpURLConnection.HTTP_NOT_MODIFIED: return "Not Modified";
+			case HttpURLConnection.HTTP_BAD_REQUEST: return "Bad Request";
+			case HttpURLConnection.HTTP_FORBIDDEN: return "Forbidden";
+			case HttpURLConnection.HTTP_NOT_FOUND: return "Not Found";
+			case HttpURLConnection.HTTP_BAD_METHOD: return "Method Not Allowed";
+			case 429: return "Too Many Requests";
+			case HttpURLConnection.HTTP_INTERNAL_ERROR: return "Internal Server Error";
+			case HttpURLConnection.HTTP_UNAVAILABLE: return "Service Unavailable";
+			default: return "";
+		}
+	}
+	
+	/**
+	 * Buffers the response body until it is flushed or closed. Closing it
+	 * also ends the exchange.
+	 */
+	private class ResponseBody extends OutputStream {
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private boolean finished = false;
+		
+		@Override
+		public void write(int b) throws IOException {
+			synchronized (NIOExchange.this) {
+				checkWritable();
+				buffer.write(b);
+			}
+		}
+		
+		@Override
+		public void write(@NotNull byte[] b, int off, int len) throws IOException {
+			synchronized (NIOExchange.this) {
+				checkWritable();
+				buffer.write(b, off, len);
+			}
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			synchronized (NIOExchange.this) {
+				if (finished || buffer.size() == 0) return;
+				if (bodyType == BodyType.CHUNKED) {
+					ByteArrayOutputStream chunk = new ByteArrayOutputStream(buffer.size() + 16);
+					chunk.write((Integer.toHexString(buffer.size()) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+					buffer.writeTo(chunk);
+					chunk.write('\r');
+					chunk.write('\n');
+					connection.send(ByteBuffer.wrap(chunk.toByteArray()));
+				} else {
+					connection.send(ByteBuffer.wrap(buffer.toByteArray()));
+				}
+				buffer.reset();
+			}
+		}
+		
+		@Override
+		public void close() {
+			NIOExchange.this.close();
+		}
+		
+		// Called by NIOExchange.close
+		void finish() throws IOException {
+			if (finished) return;
+			flush();
+			finished = true;
+			if (bodyType == BodyType.CHUNKED) {
+				connection.send(ByteBuffer.wrap("0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1)));
+			}
+		}
+		
+		private void checkWritable() throws IOException {
+			if (responseCode == -1) throw new IOException("Response headers not sent yet");
+			if (finished) throw new IOException("Stream is closed");
+			if (bodyType == BodyType.NONE) throw new IOException("Response has no body");
+		}
+	}
+	
+}
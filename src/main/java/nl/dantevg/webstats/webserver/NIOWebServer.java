@@ -0,0 +1,439 @@
+package nl.dantevg.webstats.webserver;
+
+import com.sun.net.httpserver.Headers;
+import nl.dantevg.webstats.WebStats;
+import nl.dantevg.webstats.WebStatsConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Web server which handles all connections on a single selector thread. Only
+ * the requests themselves are handled on the request executor, so idle
+ * keep-alive connections and event stream subscribers do not occupy a thread.
+ * <p>
+ * Requests on a keep-alive connection are handled one after the other, also
+ * when the client sends them without waiting for the responses (pipelining).
+ * Only plain HTTP is supported, HTTPS needs the default web server.
+ */
+public class NIOWebServer extends WebServer {
+	private static final int READ_BUFFER_SIZE = 16 * 1024;
+	private static final int MAX_HEADER_SIZE = 16 * 1024;
+	private static final int MAX_BODY_SIZE = 64 * 1024;
+	// Clients that have this many bytes waiting to be sent to them are not
+	// reading, and do not get any more data
+	private static final long MAX_PENDING_OUTPUT = 1024 * 1024;
+	private static final long IDLE_TIMEOUT_MILLIS = 30_000;
+	private static final long SELECT_TIMEOUT_MILLIS = 1000;
+	
+	private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+	// Marks the end of a response in the output queue of a connection
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+	
+	private final Selector selector;
+	private final ServerSocketChannel serverChannel;
+	
+	// Shared by all connections, only used on the selector thread
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+	
+	// Connections with new output from the request threads
+	private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+	
+	private @Nullable Thread thread;
+	private volatile boolean running;
+	
+	public NIOWebServer() throws IOException {
+		port = WebStatsConfig.getInstance().port;
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.bind(new InetSocketAddress(port), WebStatsConfig.getInstance().webServerBacklog);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+	}
+	
+	@Override
+	protected void startServer() {
+		running = true;
+		thread = new Thread(this::run, "WebStats web server");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	@Override
+	protected void stopServer(int i) {
+		running = false;
+		if (thread == null) {
+			closeAll();
+			return;
+		}
+		selector.wakeup();
+		try {
+			thread.join(Math.max(1, i) * 1000L);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void run() {
+		long lastIdleCheck = System.currentTimeMillis();
+		while (running) {
+			try {
+				selector.select(SELECT_TIMEOUT_MILLIS);
+				
+				Connection connection;
+				while ((connection = pendingWrites.poll()) != null) {
+					if (!connection.closed) handle(connection, false, true);
+				}
+				
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) continue;
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					handle((Connection) key.attachment(), key.isReadable(), key.isWritable());
+				}
+				
+				long now = System.currentTimeMillis();
+				if (now - lastIdleCheck >= SELECT_TIMEOUT_MILLIS) {
+					closeIdle(now);
+					lastIdleCheck = now;
+				}
+			} catch (IOException e) {
+				WebStats.logger.log(Level.WARNING, "Error in web server", e);
+			}
+		}
+		closeAll();
+	}
+	
+	/**
+	 * Read from and write to a connection. An unexpected error only closes
+	 * that connection, so that the selector thread keeps running.
+	 */
+	private void handle(@NotNull Connection connection, boolean read, boolean write) {
+		try {
+			if (read) connection.read();
+			if (write && !connection.closed) connection.write();
+		} catch (RuntimeException e) {
+			WebStats.logger.log(Level.WARNING, "Error in web server connection from "
+					+ connection.remoteAddress, e);
+			connection.close();
+		}
+	}
+	
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = serverChannel.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			Connection connection = new Connection(channel);
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+		}
+	}
+	
+	private void closeIdle(long now) {
+		for (SelectionKey key : selector.keys()) {
+			Connection connection = (Connection) key.attachment();
+			if (connection == null) continue;
+			if (!connection.busy && now - connection.idleSince > IDLE_TIMEOUT_MILLIS) {
+				connection.close();
+			} else if (connection.blockedSince != 0 && now - connection.blockedSince > IDLE_TIMEOUT_MILLIS) {
+				// The client stopped reading
+				connection.close();
+			}
+		}
+	}
+	
+	private void closeAll() {
+		for (SelectionKey key : selector.keys()) {
+			Connection connection = (Connection) key.attachment();
+			if (connection != null) connection.close();
+		}
+		try {
+			serverChannel.close();
+			selector.close();
+		} catch (IOException e) {
+			WebStats.logger.log(Level.WARNING, "Could not close web server", e);
+		}
+	}
+	
+	private static int indexOf(byte[] array, int length, byte[] target) {
+		outer:
+		for (int i = 0; i <= length - target.length; i++) {
+			for (int j = 0; j < target.length; j++) {
+				if (array[i + j] != target[j]) continue outer;
+			}
+			return i;
+		}
+		return -1;
+	}
+	
+	// Header lines must not contain control characters other than tab,
+	// notably no bare CR or LF
+	private static boolean isValidHeaderLine(@NotNull String line) {
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if ((c < ' ' && c != '\t') || c == 0x7F) return false;
+		}
+		return true;
+	}
+	
+	private static boolean hasToken(@Nullable String header, @NotNull String token) {
+		if (header == null) return false;
+		for (String value : header.split(",")) {
+			if (value.trim().equalsIgnoreCase(token)) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * A connection to a client. Reading and writing happens on the selector
+	 * thread, request threads only add output to the queue.
+	 */
+	class Connection {
+		final @NotNull SocketChannel channel;
+		final @NotNull InetSocketAddress remoteAddress;
+		final @NotNull InetSocketAddress localAddress;
+		SelectionKey key;
+		
+		// Received bytes which are not part of a handled request yet
+		private byte[] input = new byte[1024];
+		private int inputLength = 0;
+		
+		// Whether a request is being handled. Only used on the selector thread
+		private boolean busy = false;
+		private long idleSince = System.currentTimeMillis();
+		// When the last data was sent while more is waiting, 0 when all data
+		// was sent. Only used on the selector thread
+		private long blockedSince = 0;
+		
+		private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+		private final AtomicLong outputLength = new AtomicLong();
+		private volatile boolean closeAfterResponse = false;
+		private volatile boolean closed = false;
+		
+		Connection(@NotNull SocketChannel channel) throws IOException {
+			this.channel = channel;
+			this.remoteAddress = (InetSocketAddress) channel.getRemoteAddress();
+			this.localAddress = (InetSocketAddress) channel.getLocalAddress();
+		}
+		
+		/**
+		 * Send data to the client. Can be called from any thread.
+		 *
+		 * @param buffer the data to send, which must not be modified afterwards
+		 * @throws IOException when the connection is closed, or when the
+		 *                     client is not reading the data sent before
+		 */
+		void send(@NotNull ByteBuffer buffer) throws IOException {
+			if (closed) throw new IOException("Broken pipe");
+			if (outputLength.get() > MAX_PENDING_OUTPUT) throw new IOException("Client is not reading");
+			outputLength.addAndGet(buffer.remaining());
+			output.add(buffer);
+			pendingWrites.add(this);
+			selector.wakeup();
+		}
+		
+		/**
+		 * Mark the end of the current response. Can be called from any thread.
+		 *
+		 * @param keepAlive whether the next request on this connection can be
+		 *                  handled after this response
+		 */
+		void finish(boolean keepAlive) {
+			if (!keepAlive) closeAfterResponse = true;
+			output.add(END);
+			pendingWrites.add(this);
+			selector.wakeup();
+		}
+		
+		void read() {
+			readBuffer.clear();
+			int n;
+			try {
+				n = channel.read(readBuffer);
+			} catch (IOException e) {
+				close();
+				return;
+			}
+			if (n < 0) {
+				close();
+				return;
+			}
+			readBuffer.flip();
+			if (inputLength + n > input.length) {
+				input = Arrays.copyOf(input, Math.max(input.length * 2, inputLength + n));
+			}
+			readBuffer.get(input, inputLength, n);
+			inputLength += n;
+			
+			if (!busy) {
+				processInput();
+			} else if (inputLength > MAX_HEADER_SIZE + MAX_BODY_SIZE) {
+				// Stop reading pipelined requests until the current one is done
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+			}
+		}
+		
+		void write() {
+			try {
+				ByteBuffer buffer;
+				while ((buffer = output.peek()) != null) {
+					if (buffer == END) {
+						output.poll();
+						if (!finishResponse()) return;
+						continue;
+					}
+					int written = channel.write(buffer);
+					outputLength.addAndGet(-written);
+					if (buffer.hasRemaining()) {
+						if (written > 0 || blockedSince == 0) blockedSince = System.currentTimeMillis();
+						key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+						return;
+					}
+					output.poll();
+				}
+				blockedSince = 0;
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+			} catch (IOException | CancelledKeyException e) {
+				close();
+			}
+		}
+		
+		/**
+		 * @return whether the connection is still open
+		 */
+		private boolean finishResponse() {
+			if (closeAfterResponse) {
+				close();
+				return false;
+			}
+			busy = false;
+			idleSince = System.currentTimeMillis();
+			key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+			processInput();
+			return !closed;
+		}
+		
+		private void processInput() {
+			int headerEnd = indexOf(input, inputLength, HEADER_END);
+			if (headerEnd < 0) {
+				if (inputLength > MAX_HEADER_SIZE) sendError(431, "Request Header Fields Too Large");
+				return;
+			}
+			
+			String[] lines = new String(input, 0, headerEnd, StandardCharsets.ISO_8859_1).split("\r\n");
+			String[] requestLine = lines[0].split(" ");
+			if (requestLine.length != 3) {
+				sendError(HttpURLConnection.HTTP_BAD_REQUEST, "Bad Request");
+				return;
+			}
+			String method = requestLine[0];
+			String protocol = requestLine[2];
+			if (!protocol.equals("HTTP/1.1") && !protocol.equals("HTTP/1.0")) {
+				sendError(HttpURLConnection.HTTP_VERSION, "HTTP Version Not Supported");
+				return;
+			}
+			
+			URI uri;
+			try {
+				uri = new URI(requestLine[1]);
+			} catch (URISyntaxException e) {
+				sendError(HttpURLConnection.HTTP_BAD_REQUEST, "Bad Request");
+				return;
+			}
+			
+			Headers headers = new Headers();
+			for (int i = 1; i < lines.length; i++) {
+				int colon = lines[i].indexOf(':');
+				if (colon <= 0 || !isValidHeaderLine(lines[i])) {
+					sendError(HttpURLConnection.HTTP_BAD_REQUEST, "Bad Request");
+					return;
+				}
+				headers.add(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+			}
+			
+			// Requests with a body are not used, but they must be skipped
+			// to get to the next request
+			if (headers.containsKey("Transfer-Encoding")) {
+				sendError(HttpURLConnection.HTTP_NOT_IMPLEMENTED, "Not Implemented");
+				return;
+			}
+			int bodyLength = 0;
+			String contentLength = headers.getFirst("Content-Length");
+			if (contentLength != null) {
+				try {
+					bodyLength = Integer.parseInt(contentLength);
+				} catch (NumberFormatException e) {
+					bodyLength = -1;
+				}
+				if (bodyLength < 0) {
+					sendError(HttpURLConnection.HTTP_BAD_REQUEST, "Bad Request");
+					return;
+				}
+				if (bodyLength > MAX_BODY_SIZE) {
+					sendError(HttpURLConnection.HTTP_ENTITY_TOO_LARGE, "Payload Too Large");
+					return;
+				}
+			}
+			int requestLength = headerEnd + HEADER_END.length + bodyLength;
+			if (inputLength < requestLength) return;
+			
+			byte[] body = Arrays.copyOfRange(input, headerEnd + HEADER_END.length, requestLength);
+			System.arraycopy(input, requestLength, input, 0, inputLength - requestLength);
+			inputLength -= requestLength;
+			
+			String connectionHeader = headers.getFirst("Connection");
+			boolean keepAlive = protocol.equals("HTTP/1.1")
+					? !hasToken(connectionHeader, "close")
+					: hasToken(connectionHeader, "keep-alive");
+			
+			busy = true;
+			NIOExchange exchange = new NIOExchange(this, method, uri, protocol, headers, body, keepAlive);
+			executor.execute(() -> handler.handle(exchange));
+		}
+		
+		private void sendError(int status, @NotNull String reason) {
+			busy = true;
+			inputLength = 0;
+			key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+			String response = "HTTP/1.1 " + status + " " + reason + "\r\n"
+					+ "Content-Length: 0\r\n"
+					+ "Connection: close\r\n\r\n";
+			try {
+				send(ByteBuffer.wrap(response.getBytes(StandardCharsets.ISO_8859_1)));
+			} catch (IOException e) {
+				// Closed already
+			}
+			finish(false);
+		}
+		
+		// Only called on the selector thread
+		void close() {
+			if (closed) return;
+			closed = true;
+			if (key != null) key.cancel();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Closed already
+			}
+			output.clear();
+		}
+	}
+	
+}
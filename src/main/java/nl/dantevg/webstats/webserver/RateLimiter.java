@@ -0,0 +1,194 @@
+package nl.dantevg.webstats.webserver;
+
+import nl.dantevg.webstats.WebStatsConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of requests per route, from every address and in total,
+ * using token buckets. Every request takes a token from the bucket of its
+ * address and from the global bucket of its route. The buckets refill
+ * continuously and hold enough tokens for {@link #BURST_SECONDS} worth of
+ * requests, so that loading the web page is not limited.
+ * <p>
+ * Buckets that are completely refilled are the same as new ones, so they are
+ * removed every now and then to keep the number of buckets small.
+ */
+public class RateLimiter {
+	private static final double BURST_SECONDS = 10;
+	private static final long EVICT_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+	
+	public enum Route {
+		STATS("stats"),
+		EXPORT("export"),
+		RESOURCES("resources");
+		
+		private static final Set<String> STATS_PATHS = new HashSet<>(Arrays.asList(
+				"/stats.json", "/stats.msgpack", "/stats-delta.json", "/top.json", "/search.json", "/events",
+				"/online.json", "/tables.json"));
+		
+		private final String configName;
+		
+		Route(String configName) {
+			this.configName = configName;
+		}
+		
+		/**
+		 * @return the route of the path, or null if requests to it are not limited
+		 */
+		public static @Nullable Route of(@NotNull String path) {
+			if (path.equals("/metrics")) return null;
+			if (STATS_PATHS.contains(path) || path.startsWith("/player/")) return STATS;
+			if (path.equals("/stats.csv")) return EXPORT;
+			return RESOURCES;
+		}
+	}
+	
+	private final Map<Route, Limit> limits = new EnumMap<>(Route.class);
+	private final AtomicLong lastEviction = new AtomicLong(System.nanoTime());
+	
+	public RateLimiter(@NotNull Map<String, WebStatsConfig.RateLimitConfig> config) {
+		for (Route route : Route.values()) {
+			WebStatsConfig.RateLimitConfig routeConfig = config.get(route.configName);
+			if (routeConfig != null) limits.put(route, new Limit(routeConfig));
+		}
+	}
+	
+	/**
+	 * Take a token for a request to a route.
+	 *
+	 * @param route   the route of the request
+	 * @param address the address of the client
+	 * @return 0 if the request is allowed, otherwise the number of seconds
+	 * after which the client can try again
+	 */
+	public long acquire(@NotNull Route route, @NotNull InetAddress address) {
+		Limit limit = limits.get(route);
+		if (limit == null) return 0;
+		long now = System.nanoTime();
+		evictIfDue(now);
+		return limit.acquire(getKey(address), now);
+	}
+	
+	/**
+	 * Start handling a request, if not too many requests to the route are
+	 * being handled already. Must be followed by {@link #endRequest} when
+	 * this returns true.
+	 *
+	 * @return whether the request can be handled
+	 */
+	public boolean startRequest(@NotNull Route route) {
+		Limit limit = limits.get(route);
+		return limit == null || limit.concurrency == null || limit.concurrency.tryAcquire();
+	}
+	
+	public void endRequest(@NotNull Route route) {
+		Limit limit = limits.get(route);
+		if (limit != null && limit.concurrency != null) limit.concurrency.release();
+	}
+	
+	private void evictIfDue(long now) {
+		long last = lastEviction.get();
+		if (now - last < EVICT_INTERVAL_NANOS || !lastEviction.compareAndSet(last, now)) return;
+		for (Limit limit : limits.values()) {
+			limit.buckets.values().removeIf(bucket -> bucket.isFull(now));
+		}
+	}
+	
+	// A single client usually has a whole /64 range of IPv6 addresses
+	private static @NotNull InetAddress getKey(@NotNull InetAddress address) {
+		if (!(address instanceof Inet6Address)) return address;
+		byte[] bytes = address.getAddress();
+		Arrays.fill(bytes, 8, 16, (byte) 0);
+		try {
+			return InetAddress.getByAddress(bytes);
+		} catch (UnknownHostException e) {
+			return address;
+		}
+	}
+	
+	private static class Limit {
+		final double perIPRate;
+		final @Nullable Bucket global;
+		final @Nullable Semaphore concurrency;
+		final Map<InetAddress, Bucket> buckets = new ConcurrentHashMap<>();
+		
+		Limit(@NotNull WebStatsConfig.RateLimitConfig config) {
+			perIPRate = config.perIP;
+			global = (config.global > 0) ? new Bucket(config.global, System.nanoTime()) : null;
+			concurrency = (config.maxConcurrent > 0) ? new Semaphore(config.maxConcurrent) : null;
+		}
+		
+		long acquire(@NotNull InetAddress key, long now) {
+			Bucket bucket = null;
+			if (perIPRate > 0) {
+				bucket = buckets.computeIfAbsent(key, k -> new Bucket(perIPRate, now));
+				long retryAfter = bucket.take(now);
+				if (retryAfter > 0) return retryAfter;
+			}
+			if (global != null) {
+				long retryAfter = global.take(now);
+				if (retryAfter > 0) {
+					// This request was not handled, so it should not count
+					if (bucket != null) bucket.refund();
+					return retryAfter;
+				}
+			}
+			return 0;
+		}
+	}
+	
+	private static class Bucket {
+		private final double tokensPerNano;
+		private final double capacity;
+		private double tokens;
+		private long updatedAt;
+		
+		Bucket(double tokensPerSecond, long now) {
+			this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+			this.capacity = Math.max(1, tokensPerSecond * BURST_SECONDS);
+			this.tokens = capacity;
+			this.updatedAt = now;
+		}
+		
+		/**
+		 * @return 0 if a token was taken, otherwise the number of seconds
+		 * until a token is available
+		 */
+		synchronized long take(long now) {
+			refill(now);
+			if (tokens >= 1) {
+				tokens -= 1;
+				return 0;
+			}
+			double nanos = (1 - tokens) / tokensPerNano;
+			return Math.max(1, (long) Math.ceil(nanos / TimeUnit.SECONDS.toNanos(1)));
+		}
+		
+		synchronized void refund() {
+			tokens = Math.min(capacity, tokens + 1);
+		}
+		
+		synchronized boolean isFull(long now) {
+			refill(now);
+			return tokens >= capacity;
+		}
+		
+		private void refill(long now) {
+			// Another thread may have used a later time already
+			if (now <= updatedAt) return;
+			tokens = Math.min(capacity, tokens + (now - updatedAt) * tokensPerNano);
+			updatedAt = now;
+		}
+	}
+	
+}
@@ -0,0 +1,92 @@
+package nl.dantevg.webstats.webserver;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.net.ssl.*;
+import java.security.KeyManagementException;
+import java.security.SecureRandom;
+
+/**
+ * SSLContext which passes everything on to another SSLContext, which can be
+ * replaced while the web server is running. The web server only gets the
+ * SSLContext once, when it is created, so this is the only way to change the
+ * certificate without restarting the web server.
+ * <p>
+ * Connections that are open keep using the old SSLContext, new connections
+ * use the new one.
+ */
+class ReloadableSSLContext extends SSLContext {
+	private final Spi spi;
+	
+	ReloadableSSLContext(@NotNull SSLContext context) {
+		this(new Spi(context));
+	}
+	
+	private ReloadableSSLContext(@NotNull Spi spi) {
+		super(spi, spi.context.getProvider(), spi.context.getProtocol());
+		this.spi = spi;
+	}
+	
+	/**
+	 * Use another SSLContext for new connections.
+	 *
+	 * @param context the new SSLContext, which must be initialised already
+	 */
+	void set(@NotNull SSLContext context) {
+		spi.context = context;
+	}
+	
+	private static class Spi extends SSLContextSpi {
+		volatile @NotNull SSLContext context;
+		
+		Spi(@NotNull SSLContext context) {
+			this.context = context;
+		}
+		
+		@Override
+		protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr) throws KeyManagementException {
+			throw new KeyManagementException("ReloadableSSLContext is initialised by replacing its SSLContext");
+		}
+		
+		@Override
+		protected SSLSocketFactory engineGetSocketFactory() {
+			return context.getSocketFactory();
+		}
+		
+		@Override
+		protected SSLServerSocketFactory engineGetServerSocketFactory() {
+			return context.getServerSocketFactory();
+		}
+		
+		@Override
+		protected SSLEngine engineCreateSSLEngine() {
+			return context.createSSLEngine();
+		}
+		
+		@Override
+		protected SSLEngine engineCreateSSLEngine(String host, int port) {
+			return context.createSSLEngine(host, port);
+		}
+		
+		@Override
+		protected SSLSessionContext engineGetServerSessionContext() {
+			return context.getServerSessionContext();
+		}
+		
+		@Override
+		protected SSLSessionContext engineGetClientSessionContext() {
+			return context.getClientSessionContext();
+		}
+		
+		@Override
+		protected SSLParameters engineGetDefaultSSLParameters() {
+			return context.getDefaultSSLParameters();
+		}
+		
+		@Override
+		protected SSLParameters engineGetSupportedSSLParameters() {
+			return context.getSupportedSSLParameters();
+		}
+	}
+	
+}
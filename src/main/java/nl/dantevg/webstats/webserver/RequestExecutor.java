@@ -0,0 +1,135 @@
+package nl.dantevg.webstats.webserver;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import nl.dantevg.webstats.WebStats;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Runs the requests to the web server, so that one slow request does not
+ * stall all other requests.
+ * <p>
+ * When too many requests are waiting, new requests are not queued but run
+ * directly on the web server's dispatcher thread, where
+ * {@link HTTPRequestHandler} only responds with 503 Service Unavailable.
+ */
+public class RequestExecutor implements Executor {
+	private static final ThreadLocal<Boolean> rejected = ThreadLocal.withInitial(() -> false);
+	
+	private final @NotNull ExecutorService executor;
+	
+	// Only used for virtual threads, to limit the number of requests at once
+	private final int maxRequests;
+	private final AtomicInteger requests = new AtomicInteger();
+	
+	private RequestExecutor(@NotNull ExecutorService executor, int maxRequests) {
+		this.executor = executor;
+		this.maxRequests = maxRequests;
+	}
+	
+	/**
+	 * Create the executor for the configured number of threads and queue size.
+	 * Falls back to a pool of threads when virtual threads are not available.
+	 */
+	public static @NotNull RequestExecutor fromConfig(int threads, int queueSize, boolean virtualThreads) {
+		if (virtualThreads) {
+			RequestExecutor executor = virtual(threads + queueSize);
+			if (executor != null) return executor;
+			WebStats.logger.log(Level.WARNING, "Virtual threads need Java 21 or newer, using "
+					+ threads + " web server threads instead");
+		}
+		return pool(threads, queueSize);
+	}
+	
+	/**
+	 * Create a pool of threads with a bounded queue.
+	 *
+	 * @param threads   the number of threads
+	 * @param queueSize the maximum number of requests waiting for a thread
+	 */
+	public static @NotNull RequestExecutor pool(int threads, int queueSize) {
+		threads = Math.max(1, threads);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+				60, TimeUnit.SECONDS,
+				(queueSize > 0) ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>(),
+				new ThreadFactoryBuilder().setNameFormat("WebStats web server %d").setDaemon(true).build(),
+				(task, pool) -> runRejected(task));
+		executor.allowCoreThreadTimeOut(true);
+		return new RequestExecutor(executor, 0);
+	}
+	
+	/**
+	 * Create an executor that runs every request on a new virtual thread.
+	 * Virtual threads are available from Java 21 onwards.
+	 *
+	 * @param maxRequests the maximum number of requests handled at once
+	 * @return the executor, or null if virtual threads are not available
+	 */
+	public static @Nullable RequestExecutor virtual(int maxRequests) {
+		try {
+			ExecutorService executor = (ExecutorService) Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor")
+					.invoke(null);
+			return new RequestExecutor(executor, Math.max(1, maxRequests));
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * @return whether the current request was rejected and should get a
+	 * 503 Service Unavailable response
+	 */
+	public static boolean isRejected() {
+		return rejected.get();
+	}
+	
+	private static void runRejected(@NotNull Runnable task) {
+		rejected.set(true);
+		try {
+			task.run();
+		} finally {
+			rejected.set(false);
+		}
+	}
+	
+	@Override
+	public void execute(@NotNull Runnable task) {
+		if (maxRequests == 0) {
+			executor.execute(task);
+			return;
+		}
+		
+		if (requests.incrementAndGet() > maxRequests) {
+			requests.decrementAndGet();
+			runRejected(task);
+			return;
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					task.run();
+				} finally {
+					requests.decrementAndGet();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			requests.decrementAndGet();
+			runRejected(task);
+		}
+	}
+	
+	/**
+	 * Stop all threads. Requests that are still running get interrupted,
+	 * because they may be waiting for the main thread, which is stopping
+	 * the web server.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+}
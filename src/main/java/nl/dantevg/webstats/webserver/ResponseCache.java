@@ -0,0 +1,96 @@
+package nl.dantevg.webstats.webserver;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import nl.dantevg.webstats.metrics.Histogram;
+import nl.dantevg.webstats.metrics.Metrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Cache of serialized responses. Keys should contain everything the response
+ * depends on (like the snapshot version), so that a new version of the data
+ * automatically results in a new cache entry. Old entries are evicted when
+ * the cache is full.
+ */
+public class ResponseCache {
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+	private static final Gson gson = new Gson();
+	
+	private final Cache<String, CachedResponse> responses;
+	
+	public ResponseCache(int maxEntries) {
+		responses = CacheBuilder.newBuilder()
+				.maximumSize(maxEntries)
+				.build();
+	}
+	
+	/**
+	 * Get the cached response for the key, or load and cache a new one if it
+	 * was not present yet.
+	 *
+	 * @param key         the key which uniquely identifies this response
+	 * @param contentType the MIME-type of the response
+	 * @param loader      the function to create the response body
+	 * @return the cached response
+	 * @throws IOException when the loader throws an IOException
+	 */
+	public @NotNull CachedResponse get(@NotNull String key, @NotNull String contentType, @NotNull Callable<byte[]> loader)
+			throws IOException {
+		try {
+			return responses.get(key, () -> {
+				// The first part of the key is the endpoint
+				String endpoint = key.split(" ", 2)[0];
+				byte[] body;
+				try (Histogram.Timer ignored = Metrics.SERIALIZATION_SECONDS.time(endpoint)) {
+					body = loader.call();
+				}
+				Metrics.SERIALIZATION_BYTES.observe(body.length, endpoint);
+				return new CachedResponse(contentType, body);
+			});
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Get the cached JSON response for the key, or serialize and cache a new
+	 * one if it was not present yet.
+	 *
+	 * @param key  the key which uniquely identifies this response
+	 * @param data the function to get the object to serialize
+	 * @return the cached response
+	 */
+	public @NotNull CachedResponse getJson(@NotNull String key, @NotNull Supplier<Object> data) {
+		try {
+			return get(key, "application/json", () -> toJson(data.get()));
+		} catch (IOException e) {
+			// Writing to memory does not throw IOExceptions
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Serialize an object to UTF-8 encoded JSON. The JSON is written to the
+	 * bytes directly, without creating the JSON string first.
+	 */
+	private static byte[] toJson(@Nullable Object data) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+		try (JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+			gson.toJson(data, (data != null) ? data.getClass() : Object.class, writer);
+		}
+		return output.toByteArray();
+	}
+	
+}
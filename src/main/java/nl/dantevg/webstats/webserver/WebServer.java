@@ -1,21 +1,31 @@
 package nl.dantevg.webstats.webserver;
 
-import com.sun.net.httpserver.HttpServer;
 import nl.dantevg.webstats.WebStats;
+import nl.dantevg.webstats.WebStatsConfig;
 
 import java.util.logging.Level;
 
-public abstract class WebServer<T extends HttpServer> {
+public abstract class WebServer {
 	protected int port;
-	protected T server;
+	protected HTTPRequestHandler handler;
+	protected RequestExecutor executor;
 	
 	public void start() {
-		server.createContext("/", new HTTPRequestHandler());
-		server.start();
+		WebStatsConfig config = WebStatsConfig.getInstance();
+		handler = new HTTPRequestHandler();
+		executor = RequestExecutor.fromConfig(config.webServerThreads,
+				config.webServerQueueSize, config.webServerVirtualThreads);
+		startServer();
 		WebStats.logger.log(Level.INFO, "Web server started on port " + port);
 	}
 	
 	public void stop(int i) {
-		server.stop(i);
+		if (handler != null) handler.close();
+		stopServer(i);
+		if (executor != null) executor.shutdown();
 	}
+	
+	protected abstract void startServer();
+	
+	protected abstract void stopServer(int i);
 }
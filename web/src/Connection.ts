@@ -1,12 +1,20 @@
+import MessagePack from "./MessagePack"
+
 export default class Connection {
 	all: string
+	binary?: string
+	delta?: string
+	events?: string
 	scores: string
 	online: string
 	tables: string
 	serverIcon: string
 
-	constructor({ all, scores, online, tables, serverIcon }) {
+	constructor({ all, binary = undefined, delta = undefined, events = undefined, scores, online, tables, serverIcon }) {
 		this.all = all
+		this.binary = binary
+		this.delta = delta
+		this.events = events
 		this.scores = scores
 		this.online = online
 		this.tables = tables
@@ -18,6 +26,9 @@ export default class Connection {
 		const protocol = host.startsWith("http") ? "" : "http://"
 		return new Connection({
 			all:    `${protocol}${host}/stats.json`,
+			binary: `${protocol}${host}/stats.msgpack`,
+			delta:  `${protocol}${host}/stats-delta.json`,
+			events: `${protocol}${host}/events`,
 			scores: `${protocol}${host}/scoreboard.json`,
 			online: `${protocol}${host}/online.json`,
 			tables: `${protocol}${host}/tables.json`,
@@ -25,7 +36,18 @@ export default class Connection {
 		})
 	}
 
-	getStats = async () => {
+	getStats = async (retries = 3) => {
+		if (this.binary) {
+			const response = await fetch(this.binary)
+			if (response.ok) return Connection.fromMessagePack(MessagePack.decode(await response.arrayBuffer()))
+			if (response.status == 429 && retries > 0) {
+				await new Promise(resolve => setTimeout(resolve, Connection.retryAfterMillis(response)))
+				return await this.getStats(retries - 1)
+			}
+			// Older servers do not have the binary format, use JSON from now on
+			if (response.status == 404 || response.status == 415) this.binary = undefined
+			else throw new Error(`${response.status} ${response.statusText}`)
+		}
 		if (this.all) {
 			return await (await fetch(this.all)).json()
 		} else {
@@ -33,7 +55,39 @@ export default class Connection {
 			return { online, scoreboard }
 		}
 	}
+	// Get only the changes since the given version. When the server no longer
+	// has that version, it responds with all stats instead
+	getStatsDelta = async (since: number) => {
+		if (!this.delta || since == undefined) return await this.getStats()
+		return await (await fetch(`${this.delta}?since=${since}`)).json()
+	}
 	getScoreboard = () => fetch(this.scores).then(response => response.json()).catch(() => {})
 	getOnline = () => fetch(this.online).then(response => response.json()).catch(() => {})
 	getTables = () => fetch(this.tables).then(response => response.json()).catch(() => {})
+
+	// The time to wait before trying again, from the Retry-After header in
+	// seconds or as a date
+	static retryAfterMillis(response: Response) {
+		const retryAfter = response.headers.get("Retry-After") ?? ""
+		const seconds = Number(retryAfter)
+		const millis = (retryAfter != "" && !isNaN(seconds)) ? seconds * 1000 : Date.parse(retryAfter) - Date.now()
+		return isNaN(millis) ? 1000 : Math.max(0, millis)
+	}
+
+	// Convert stats from /stats.msgpack to the same shape as /stats.json.
+	// Instead of a map of entries to scores per column, the binary format has
+	// an array of scores per column, in the order of the entries
+	static fromMessagePack(data: any) {
+		const { entries, scoreColumns, scores, ...scoreboard } = data.scoreboard
+		scoreboard.entries = entries
+		scoreboard.scores = {}
+		scoreColumns.forEach((column: string, c: number) => {
+			const columnScores = {}
+			scores[c].forEach((score: any, e: number) => {
+				if (score != null) columnScores[entries[e]] = String(score)
+			})
+			scoreboard.scores[column] = columnScores
+		})
+		return { ...data, scoreboard }
+	}
 }
@@ -6,10 +6,25 @@ type Scoreboard = {
 }
 type Online = { [player: string]: boolean | PlayerStatus }
 type Entry = [number, string, ...(string)[]]
+export type StatDelta = {
+	since: number
+	version: number
+	addedEntries?: string[]
+	removedEntries?: string[]
+	columns?: string[]
+	scores?: { [column: string]: { [entry: string]: string } }
+	removedScores?: { [column: string]: string[] }
+	online?: Online
+	offline?: string[]
+	playernames?: string[]
+	skins?: { [player: string]: string }
+}
 
 export default class Data {
 	static BEDROCK_PREFIX = "."
 
+	version?: number
+	rawScoreboard: Scoreboard
 	scoreboard: Scoreboard
 	columns: string[]
 	scores: Entry[]
@@ -35,7 +50,9 @@ export default class Data {
 	isCurrentPlayer = (player: string) => this.playernames?.includes(player) ?? false
 
 	setScoreboard(scoreboard: Scoreboard) {
-		this.scoreboard = scoreboard
+		// Keep the unfiltered scoreboard around to apply deltas to
+		this.rawScoreboard = scoreboard
+		this.scoreboard = { ...scoreboard }
 		this.columns = Object.keys(scoreboard.scores).sort()
 
 		this.filter()
@@ -59,7 +76,8 @@ export default class Data {
 	setPlayernames(playernames: string[]) { this.playernames = playernames }
 	setUnits(units: { [column: string]: string }) { this.units = units }
 	setSkins(skins: { [player: string]: string }) { this.skins = skins }
-	setStats(data: { scoreboard: Scoreboard, online: Online, playernames: string[], units?: { [column: string]: string }, skins?: { [player: string]: string } }) {
+	setStats(data: { version?: number, scoreboard: Scoreboard, online: Online, playernames: string[], units?: { [column: string]: string }, skins?: { [player: string]: string } }) {
+		this.version = data.version
 		this.setScoreboard(data.scoreboard)
 		this.setOnlineStatus(data.online)
 		this.setPlayernames(data.playernames)
@@ -67,6 +85,40 @@ export default class Data {
 		this.setSkins(data.skins ?? {})
 	}
 
+	// Apply the changes from the server to the stats. Returns false when the
+	// changes are not relative to the current version, then all stats need
+	// to be retrieved again
+	applyDelta(delta: StatDelta) {
+		if (delta.since != this.version) return false
+		this.version = delta.version
+
+		const raw = this.rawScoreboard
+		if (delta.addedEntries || delta.removedEntries || delta.columns || delta.scores || delta.removedScores) {
+			const removed = new Set(delta.removedEntries ?? [])
+			raw.entries = raw.entries.filter(entry => !removed.has(entry))
+				.concat(delta.addedEntries ?? [])
+			if (delta.columns) raw.columns = delta.columns
+			for (const column in delta.scores ?? {}) {
+				raw.scores[column] = { ...raw.scores[column], ...delta.scores[column] }
+			}
+			for (const column in delta.removedScores ?? {}) {
+				if (!raw.scores[column]) continue
+				for (const entry of delta.removedScores[column]) delete raw.scores[column][entry]
+			}
+			this.setScoreboard(raw)
+		}
+
+		if (delta.online || delta.offline) {
+			const online = { ...this.players, ...delta.online }
+			for (const player of delta.offline ?? []) delete online[player]
+			this.setOnlineStatus(online)
+		}
+
+		if (delta.playernames) this.setPlayernames(delta.playernames)
+		if (delta.skins) this.setSkins(delta.skins)
+		return true
+	}
+
 	filter() {
 		// Remove non-player / empty entries and sort
 		this.scoreboard.entries = this.scoreboard.entries
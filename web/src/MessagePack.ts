@@ -0,0 +1,82 @@
+// Decoder for the MessagePack binary format (https://msgpack.org), for the
+// types the server sends: nil, booleans, integers, floats, strings, arrays
+// and maps. Maps are decoded to objects, integers that do not fit in a
+// JavaScript number exactly are decoded to bigints.
+export default class MessagePack {
+	private view: DataView
+	private bytes: Uint8Array
+	private offset = 0
+	private static textDecoder = new TextDecoder()
+
+	private constructor(buffer: ArrayBuffer) {
+		this.view = new DataView(buffer)
+		this.bytes = new Uint8Array(buffer)
+	}
+
+	static decode(buffer: ArrayBuffer): any {
+		return new MessagePack(buffer).read()
+	}
+
+	private read(): any {
+		const type = this.view.getUint8(this.offset++)
+		if (type < 0x80) return type // positive fixint
+		if (type < 0x90) return this.readMap(type & 0x0f)
+		if (type < 0xa0) return this.readArray(type & 0x0f)
+		if (type < 0xc0) return this.readString(type & 0x1f)
+		if (type >= 0xe0) return type - 0x100 // negative fixint
+
+		switch (type) {
+			case 0xc0: return null
+			case 0xc2: return false
+			case 0xc3: return true
+			case 0xca: return this.advance(4, this.view.getFloat32(this.offset))
+			case 0xcb: return this.advance(8, this.view.getFloat64(this.offset))
+			case 0xcc: return this.advance(1, this.view.getUint8(this.offset))
+			case 0xcd: return this.advance(2, this.view.getUint16(this.offset))
+			case 0xce: return this.advance(4, this.view.getUint32(this.offset))
+			case 0xcf: return this.advance(8, MessagePack.toNumber(this.view.getBigUint64(this.offset)))
+			case 0xd0: return this.advance(1, this.view.getInt8(this.offset))
+			case 0xd1: return this.advance(2, this.view.getInt16(this.offset))
+			case 0xd2: return this.advance(4, this.view.getInt32(this.offset))
+			case 0xd3: return this.advance(8, MessagePack.toNumber(this.view.getBigInt64(this.offset)))
+			case 0xd9: return this.readString(this.advance(1, this.view.getUint8(this.offset)))
+			case 0xda: return this.readString(this.advance(2, this.view.getUint16(this.offset)))
+			case 0xdb: return this.readString(this.advance(4, this.view.getUint32(this.offset)))
+			case 0xdc: return this.readArray(this.advance(2, this.view.getUint16(this.offset)))
+			case 0xdd: return this.readArray(this.advance(4, this.view.getUint32(this.offset)))
+			case 0xde: return this.readMap(this.advance(2, this.view.getUint16(this.offset)))
+			case 0xdf: return this.readMap(this.advance(4, this.view.getUint32(this.offset)))
+			default: throw new Error(`Unsupported MessagePack type 0x${type.toString(16)}`)
+		}
+	}
+
+	private readString(length: number) {
+		const value = MessagePack.textDecoder.decode(this.bytes.subarray(this.offset, this.offset + length))
+		this.offset += length
+		return value
+	}
+
+	private readArray(length: number) {
+		const array = new Array(length)
+		for (let i = 0; i < length; i++) array[i] = this.read()
+		return array
+	}
+
+	private readMap(length: number) {
+		const map = {}
+		for (let i = 0; i < length; i++) {
+			const key = this.read()
+			map[key] = this.read()
+		}
+		return map
+	}
+
+	// Move past a value that has been read
+	private advance<T>(length: number, value: T) {
+		this.offset += length
+		return value
+	}
+
+	private static toNumber = (value: bigint) =>
+		(value >= Number.MIN_SAFE_INTEGER && value <= Number.MAX_SAFE_INTEGER) ? Number(value) : value
+}
@@ -41,6 +41,7 @@ export default class WebStats {
 	data: Data
 	updateInterval: number
 	interval: number
+	eventSource?: EventSource
 
 	loadingElem?: HTMLElement
 	errorElem?: HTMLElement
@@ -132,10 +133,7 @@ export default class WebStats {
 	update() {
 		// When nobody is online, assume scoreboard does not change
 		if (this.data.nOnline > 0) {
-			this.connection.getStats().then(data => {
-				this.data.setStats(data)
-				this.displays.forEach(display => display.updateStatsAndShow())
-			}).catch(this.catchError(WebStats.CONNECTION_ERROR_MSG))
+			this.updateStats()
 		} else {
 			this.connection.getOnline().then(data => {
 				this.data.setOnlineStatus(data)
@@ -144,13 +142,50 @@ export default class WebStats {
 		}
 	}
 
+	updateStats() {
+		this.connection.getStatsDelta(this.data.version).then(async data => {
+			// The server sends all stats when it cannot send only the changes
+			if (data.scoreboard) this.data.setStats(data)
+			// The changes are relative to another version, get all stats
+			else if (!this.data.applyDelta(data)) this.data.setStats(await this.connection.getStats())
+			this.displays.forEach(display => display.updateStatsAndShow())
+		}).catch(this.catchError(WebStats.CONNECTION_ERROR_MSG))
+	}
+
 	startUpdateInterval(first?: boolean) {
+		// Prefer getting notified by the server over polling
+		if (this.startEventStream()) return
 		this.interval = setInterval(this.update.bind(this) as TimerHandler, this.updateInterval)
 		if (!first) this.update()
 	}
 
 	stopUpdateInterval() {
 		clearInterval(this.interval)
+		this.eventSource?.close()
+		this.eventSource = undefined
+	}
+
+	startEventStream() {
+		if (!this.connection.events || !window.EventSource) return false
+
+		let opened = false
+		const eventSource = new EventSource(this.connection.events)
+		eventSource.addEventListener("open", () => opened = true)
+		eventSource.addEventListener("update", (e: MessageEvent) => {
+			if (JSON.parse(e.data).version != this.data.version) this.updateStats()
+		})
+		eventSource.addEventListener("error", () => {
+			// The server does not support events (older version or disabled
+			// in the config), fall back to polling
+			if (!opened) {
+				eventSource.close()
+				this.eventSource = undefined
+				this.connection.events = undefined
+				this.startUpdateInterval()
+			}
+		})
+		this.eventSource = eventSource
+		return true
 	}
 
 	addTableManual(config: WebStatsConfig, tableConfig: TableConfig) {